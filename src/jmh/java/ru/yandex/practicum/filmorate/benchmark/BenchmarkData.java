@@ -0,0 +1,79 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+// Заполнение хранилищ тестовыми данными для бенчмарков
+final class BenchmarkData {
+    private static final int BATCH = 10_000;
+
+    private BenchmarkData() {
+    }
+
+    static Film newFilm(long n) {
+        Film film = new Film();
+        film.setName("Film " + n);
+        film.setDescription("Description of film " + n);
+        film.setReleaseDate(LocalDate.of(1900, 1, 1).plusDays(n % 40_000));
+        film.setDuration(60 + n % 120);
+        return film;
+    }
+
+    static User newUser(long n) {
+        User user = new User();
+        user.setLogin("user" + n);
+        user.setEmail("user" + n + "@mail.ru");
+        user.setName("User " + n);
+        user.setBirthday(LocalDate.of(1950, 1, 1).plusDays(n % 20_000));
+        return user;
+    }
+
+    static void createFilms(FilmStorage films, int count) {
+        List<Film> batch = new ArrayList<>(BATCH);
+        for (long n = 0; n < count; n++) {
+            batch.add(newFilm(n));
+            if (batch.size() == BATCH) {
+                films.createAll(batch);
+                batch = new ArrayList<>(BATCH);
+            }
+        }
+        films.createAll(batch);
+    }
+
+    static void createUsers(UserStorage users, int count) {
+        List<User> batch = new ArrayList<>(BATCH);
+        for (long n = 0; n < count; n++) {
+            batch.add(newUser(n));
+            if (batch.size() == BATCH) {
+                users.createAll(batch);
+                batch = new ArrayList<>(BATCH);
+            }
+        }
+        users.createAll(batch);
+    }
+
+    // отдельная in-memory база H2 с пулом соединений, как в профиле db
+    static HikariDataSource newH2DataSource() {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1;QUERY_CACHE_SIZE=64");
+        dataSource.setUsername("sa");
+        dataSource.setMaximumPoolSize(16);
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+        return dataSource;
+    }
+
+    static NamedParameterJdbcTemplate jdbc(HikariDataSource dataSource) {
+        return new NamedParameterJdbcTemplate(dataSource);
+    }
+}
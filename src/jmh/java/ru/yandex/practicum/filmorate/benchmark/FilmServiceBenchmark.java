@@ -0,0 +1,91 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.storage.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.InMemoryLikeStorage;
+import ru.yandex.practicum.filmorate.storage.InMemoryUserStorage;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Число потоков задаётся через -t, например -Djmh.args="FilmServiceBenchmark -t 8"
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class FilmServiceBenchmark {
+    // пользователи из этого диапазона лайкают только внутри бенчмарка и сразу снимают лайк,
+    // поэтому распределение лайков между итерациями не меняется
+    private static final int BENCHMARK_USERS = 1000;
+
+    @Param({"1000", "100000", "1000000"})
+    private int size;
+
+    private FilmService filmService;
+    private int likingUsers;
+
+    @Setup
+    public void setUp() {
+        InMemoryLikeStorage likes = new InMemoryLikeStorage();
+        InMemoryFilmStorage films = new InMemoryFilmStorage(likes);
+        InMemoryUserStorage users = new InMemoryUserStorage();
+        filmService = new FilmService(films, users, likes, event -> { });
+
+        likingUsers = Math.max(100, size / 10);
+        BenchmarkData.createUsers(users, likingUsers + BENCHMARK_USERS);
+        BenchmarkData.createFilms(films, size);
+        Random random = new Random(42);
+        for (long filmId = 1; filmId <= size; filmId++) {
+            int filmLikes = random.nextInt(20);
+            for (int i = 0; i < filmLikes; i++) {
+                likes.addLike(filmId, 1L + random.nextInt(likingUsers));
+            }
+        }
+    }
+
+    @Benchmark
+    public List<Film> popularTop10() {
+        return filmService.getPopularFilms(10);
+    }
+
+    @Benchmark
+    public List<Film> popularTop100() {
+        return filmService.getPopularFilms(100);
+    }
+
+    // редкое слово (номер фильма, он же префикс других номеров) вместе со словом, которое есть у всех фильмов
+    @Benchmark
+    public List<Film> searchByNameAndNumber() {
+        return filmService.searchFilms("film " + ThreadLocalRandom.current().nextInt(size), 10);
+    }
+
+    @Benchmark
+    public List<Film> searchByPrefix() {
+        return filmService.searchFilms("desc", 10);
+    }
+
+    @Benchmark
+    public int addAndRemoveLike() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long filmId = 1 + random.nextLong(size);
+        long userId = likingUsers + 1 + random.nextLong(BENCHMARK_USERS);
+        filmService.addLike(filmId, userId);
+        return filmService.removeLike(filmId, userId);
+    }
+}
@@ -0,0 +1,53 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.function.BooleanSupplier;
+
+// Источник соединений с искусственной сетевой задержкой: in-memory H2 отвечает за микросекунды и не блокирует
+// поток, а у настоящей БД каждый запрос ждёт сеть. Задержка выдерживается уже с полученным из пула соединением,
+// как при ожидании ответа сервера, поэтому одновременно ждать могут не больше запросов, чем соединений в пуле
+final class LatencyDataSource extends DelegatingDataSource {
+    private final Duration latency;
+    private final BooleanSupplier enabled;
+
+    private LatencyDataSource(DataSource target, Duration latency, BooleanSupplier enabled) {
+        super(target);
+        this.latency = latency;
+        this.enabled = enabled;
+    }
+
+    // Оборачивает DataSource приложения при старте контекста; задержка действует, пока enabled возвращает true,
+    // чтобы заполнение базы перед замером не ждало сеть на каждой вставке
+    static BeanPostProcessor wrapping(Duration latency, BooleanSupplier enabled) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                return bean instanceof DataSource dataSource && !(bean instanceof LatencyDataSource)
+                        ? new LatencyDataSource(dataSource, latency, enabled)
+                        : bean;
+            }
+        };
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Connection connection = super.getConnection();
+        if (!enabled.getAsBoolean()) {
+            return connection;
+        }
+        try {
+            Thread.sleep(latency);
+        } catch (InterruptedException e) {
+            connection.close();
+            Thread.currentThread().interrupt();
+            throw new SQLException("Ожидание соединения прервано", e);
+        }
+        return connection;
+    }
+}
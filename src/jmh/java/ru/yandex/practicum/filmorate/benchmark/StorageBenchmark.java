@@ -0,0 +1,83 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.InMemoryLikeStorage;
+import ru.yandex.practicum.filmorate.storage.JdbcFilmStorage;
+
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Сравнение реализаций FilmStorage: -Djmh.args="StorageBenchmark -p storage=memory,jdbc -p size=100000 -t 4"
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class StorageBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Storage {
+        @Param({"memory", "jdbc"})
+        private String storage;
+        @Param({"1000", "100000", "1000000"})
+        private int size;
+
+        private FilmStorage films;
+        private HikariDataSource dataSource;
+
+        // create() меняет размер хранилища, поэтому данные пересоздаются перед каждой итерацией
+        @Setup(Level.Iteration)
+        public void setUp() {
+            tearDown();
+            if ("jdbc".equals(storage)) {
+                dataSource = BenchmarkData.newH2DataSource();
+                films = new JdbcFilmStorage(BenchmarkData.jdbc(dataSource));
+            } else {
+                films = new InMemoryFilmStorage(new InMemoryLikeStorage());
+            }
+            BenchmarkData.createFilms(films, size);
+        }
+
+        @TearDown(Level.Iteration)
+        public void tearDown() {
+            if (dataSource != null) {
+                dataSource.close();
+                dataSource = null;
+            }
+        }
+    }
+
+    private static final AtomicLong FILM_NUMBER = new AtomicLong();
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 3, batchSize = 10_000)
+    @Measurement(iterations = 5, batchSize = 10_000)
+    public Film create(Storage state) {
+        return state.films.create(BenchmarkData.newFilm(FILM_NUMBER.incrementAndGet()));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 3, time = 2)
+    @Measurement(iterations = 5, time = 2)
+    public Optional<Film> findById(Storage state) {
+        return state.films.findById(1 + ThreadLocalRandom.current().nextLong(state.size));
+    }
+}
@@ -0,0 +1,84 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.InMemoryUserStorage;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Число потоков задаётся через -t, например -Djmh.args="UserServiceBenchmark -t 8"
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class UserServiceBenchmark {
+    private static final int FRIENDS_PER_USER = 20;
+    private static final long FIRST_INFLUENCER = 1;
+    private static final long SECOND_INFLUENCER = 2;
+
+    @Param({"1000", "100000", "1000000"})
+    private int size;
+
+    private UserService userService;
+
+    @Setup
+    public void setUp() {
+        InMemoryUserStorage users = new InMemoryUserStorage();
+        userService = new UserService(users);
+        BenchmarkData.createUsers(users, size);
+
+        Random random = new Random(42);
+        for (long userId = 3; userId <= size; userId++) {
+            for (int i = 0; i < FRIENDS_PER_USER / 2; i++) {
+                long friendId = 3 + random.nextInt(size - 2);
+                if (friendId != userId) {
+                    users.addFriend(userId, friendId);
+                }
+            }
+            // у двух «блогеров» в друзьях примерно по трети всех пользователей
+            if (random.nextInt(3) == 0) {
+                users.addFriend(FIRST_INFLUENCER, userId);
+            }
+            if (random.nextInt(3) == 0) {
+                users.addFriend(SECOND_INFLUENCER, userId);
+            }
+        }
+    }
+
+    @Benchmark
+    public List<User> commonFriendsOfRegularUsers() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return userService.getCommonFriends(3 + random.nextLong(size - 2), 3 + random.nextLong(size - 2));
+    }
+
+    @Benchmark
+    public List<User> commonFriendsOfInfluencerAndRegularUser() {
+        return userService.getCommonFriends(FIRST_INFLUENCER, 3 + ThreadLocalRandom.current().nextLong(size - 2));
+    }
+
+    @Benchmark
+    public List<User> commonFriendsOfInfluencers() {
+        return userService.getCommonFriends(FIRST_INFLUENCER, SECOND_INFLUENCER);
+    }
+
+    @Benchmark
+    public List<User> getFriends() {
+        return userService.getFriends(3 + ThreadLocalRandom.current().nextLong(size - 2));
+    }
+}
@@ -0,0 +1,123 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.yandex.practicum.filmorate.FilmorateApplication;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.LikeStorage;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Нагрузочный тест режима виртуальных потоков: приложение поднимается в профиле db с пулом Tomcat
+// на платформенных или на виртуальных потоках, и 256 клиентов параллельно читают фильмы.
+// Каждое соединение с БД удерживается dbLatencyMillis (LatencyDataSource), как при обращении к удалённой БД,
+// и поток запроса всё это время заблокирован. Платформенные потоки ограничивают пропускную способность
+// величиной tomcatThreads / время запроса, виртуальные — только процессором. При 5 мс на одноядерной машине
+// оба режима упираются в процессор, при 250 мс разница видна и на ней.
+// Кэш сущностей вмещает десятую часть фильмов, так что большинство чтений идёт мимо него и загружает фильм
+// из БД на потоке запроса; закрепление виртуальных потоков видно с -jvmArgsAppend -Djdk.tracePinnedThreads=full.
+// Запуск: mvn -Pjmh test-compile exec:exec -Djmh.args="VirtualThreadLoadBenchmark"
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(256)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+public class VirtualThreadLoadBenchmark {
+    private static final int FILMS = 10_000;
+    private static final int USERS = 1_000;
+
+    @Param({"platform", "virtual"})
+    private String threads;
+    // ограничение пула платформенных потоков; на виртуальных потоках Tomcat его не использует
+    @Param({"50"})
+    private int tomcatThreads;
+    @Param({"5", "250"})
+    private int dbLatencyMillis;
+    @Param({"true", "false"})
+    private boolean cache;
+
+    private final AtomicBoolean latencyEnabled = new AtomicBoolean();
+    private ConfigurableApplicationContext context;
+    private HttpClient client;
+    private String baseUrl;
+
+    @Setup
+    public void setUp() {
+        context = new SpringApplicationBuilder(FilmorateApplication.class)
+                .initializers(applicationContext -> applicationContext.getBeanFactory()
+                        .addBeanPostProcessor(LatencyDataSource.wrapping(Duration.ofMillis(dbLatencyMillis), latencyEnabled::get)))
+                .profiles("db")
+                // аргументы командной строки, а не .properties(): те имеют наименьший приоритет
+                // и перекрывались бы application-db.properties (файловая база, кэш, пул на 16 соединений)
+                .run(
+                        "--server.port=0",
+                        "--spring.threads.virtual.enabled=" + "virtual".equals(threads),
+                        "--server.tomcat.threads.max=" + tomcatThreads,
+                        "--server.tomcat.accept-count=1000",
+                        "--spring.datasource.url=jdbc:h2:mem:load-" + threads + ";DB_CLOSE_DELAY=-1",
+                        // пул больше числа клиентов: ограничивать должны потоки Tomcat, а не соединения
+                        "--spring.datasource.hikari.maximum-pool-size=300",
+                        "--filmorate.cache.enabled=" + cache,
+                        "--filmorate.cache.maximum-size=" + FILMS / 10,
+                        "--logging.level.root=WARN",
+                        "--logging.level.org.zalando.logbook=OFF");
+        baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+
+        UserStorage users = context.getBean(UserStorage.class);
+        FilmStorage films = context.getBean(FilmStorage.class);
+        LikeStorage likes = context.getBean(LikeStorage.class);
+        BenchmarkData.createUsers(users, USERS);
+        BenchmarkData.createFilms(films, FILMS);
+        Random random = new Random(42);
+        for (int i = 0; i < FILMS; i++) {
+            likes.addLike(1L + random.nextInt(FILMS), 1L + random.nextInt(USERS));
+        }
+        latencyEnabled.set(true);
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public int getFilm() throws IOException, InterruptedException {
+        return get("/films/" + (1 + ThreadLocalRandom.current().nextInt(FILMS)));
+    }
+
+    @Benchmark
+    public int getPopularFilms() throws IOException, InterruptedException {
+        return get("/films/popular?count=20");
+    }
+
+    private int get(String path) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path)).GET().build();
+        return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+}
@@ -0,0 +1,84 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.ImportReport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+// Массовый импорт: тело (JSON-массив или NDJSON) читается потоковым парсером по одной записи,
+// каждая запись проверяется отдельно, а принятые сохраняются пачками по BATCH_SIZE.
+// В памяти одновременно находится не больше одной пачки
+final class BulkImports {
+    static final int BATCH_SIZE = 500;
+
+    private BulkImports() {
+    }
+
+    static <T> ImportReport read(ObjectMapper mapper, Validator validator, InputStream body, Class<T> type,
+                                 Consumer<T> check, Consumer<List<T>> insert) throws IOException {
+        ImportReport report = new ImportReport();
+        List<T> batch = new ArrayList<>(BATCH_SIZE);
+        try (JsonParser parser = mapper.getFactory().createParser(body)) {
+            JsonToken token = parser.nextToken();
+            boolean array = token == JsonToken.START_ARRAY;
+            if (array) {
+                token = parser.nextToken();
+            }
+            while (token != null && token != JsonToken.END_ARRAY) {
+                long index = report.nextRecord();
+                JsonNode node = mapper.readTree(parser);
+                try {
+                    T item = mapper.treeToValue(node, type);
+                    checkConstraints(validator, item);
+                    check.accept(item);
+                    batch.add(item);
+                } catch (JsonProcessingException e) {
+                    report.reject(index, e.getOriginalMessage());
+                } catch (ValidationException e) {
+                    report.reject(index, e.getMessage());
+                }
+                if (batch.size() == BATCH_SIZE) {
+                    flush(batch, insert, report);
+                }
+                token = parser.nextToken();
+            }
+            if (array && token == null) {
+                report.abort("Не найден конец JSON-массива");
+            }
+        } catch (JsonParseException e) {
+            report.abort("Некорректный JSON: " + e.getOriginalMessage());
+        }
+        flush(batch, insert, report);
+        return report;
+    }
+
+    private static <T> void checkConstraints(Validator validator, T item) {
+        Set<ConstraintViolation<T>> violations = validator.validate(item);
+        if (!violations.isEmpty()) {
+            ConstraintViolation<T> violation = violations.iterator().next();
+            throw new ValidationException(violation.getPropertyPath() + ": " + violation.getMessage());
+        }
+    }
+
+    private static <T> void flush(List<T> batch, Consumer<List<T>> insert, ImportReport report) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        insert.accept(List.copyOf(batch));
+        report.imported(batch.size());
+        batch.clear();
+    }
+}
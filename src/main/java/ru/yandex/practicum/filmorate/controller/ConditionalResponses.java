@@ -0,0 +1,41 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.function.Supplier;
+
+// Условный GET по версии сущности: если ETag клиента совпал с текущей версией, сущность не читается
+// и не сериализуется — ответ 304 без тела. ETag ставится только на успешный ответ, поэтому ответ 404
+// не оставляет клиенту метку, по которой он потом получил бы 304 для несуществующей сущности
+final class ConditionalResponses {
+    private static final String ANY = "*";
+    private static final String WEAK_PREFIX = "W/";
+
+    private ConditionalResponses() {
+    }
+
+    static <T> ResponseEntity<T> ifNoneMatch(String ifNoneMatch, String version, Supplier<T> body) {
+        String etag = '"' + version + '"';
+        if (ifNoneMatch == null) {
+            return ResponseEntity.ok().eTag(etag).body(body.get());
+        }
+        boolean matched = false;
+        boolean any = false;
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            any |= tag.equals(ANY);
+            // для GET If-None-Match сравнивается слабо: префикс W/ не учитывается
+            matched |= (tag.startsWith(WEAK_PREFIX) ? tag.substring(WEAK_PREFIX.length()) : tag).equals(etag);
+        }
+        if (matched) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        // «*» совпадает с любой существующей сущностью, а существование проверяет само чтение
+        T value = body.get();
+        if (any) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        return ResponseEntity.ok().eTag(etag).body(value);
+    }
+}
@@ -1,5 +1,6 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -10,30 +11,37 @@ import ru.yandex.practicum.filmorate.exception.ValidationException;
 
 import java.util.Map;
 
+// Ошибки клиента пишутся в WARN, непредвиденные — в ERROR со стеком: оба уровня идут через очередь логов,
+// которая не отбрасывает записи (см. logback-spring.xml), и не сэмплируются
+@Slf4j
 @RestControllerAdvice
 public class ErrorHandler {
 
     @ExceptionHandler(MethodArgumentNotValidException.class)
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     public Map<String, String> handleMethodArgumentNotValid(MethodArgumentNotValidException e) {
+        log.warn("Некорректное значение: {}", e.getMessage());
         return Map.of("Некорректное значение", e.getMessage());
     }
 
     @ExceptionHandler
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     public Map<String, String> handleValidation(ValidationException e) {
+        log.warn("Некорректное значение: {}", e.getMessage());
         return Map.of("Некорректное значение", e.getMessage());
     }
 
     @ExceptionHandler
     @ResponseStatus(HttpStatus.NOT_FOUND)
     public Map<String, String> handleValidation(NotFoundException e) {
+        log.warn("Отсутствует значение: {}", e.getMessage());
         return Map.of("Отсутствует значение", e.getMessage());
     }
 
     @ExceptionHandler
     @ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
     public Map<String, String> handleValidation(Exception e) {
+        log.error("Непредвиденная ошибка при обработке запроса", e);
         return Map.of("возникла непредвиденная ошибка!", e.getMessage());
     }
 }
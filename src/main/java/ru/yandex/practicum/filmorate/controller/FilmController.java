@@ -1,15 +1,27 @@
 package ru.yandex.practicum.filmorate.controller;
 
 import ch.qos.logback.classic.Logger;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.validation.Valid;
+import jakarta.validation.Validator;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.BatchResult;
+import ru.yandex.practicum.filmorate.model.ImportReport;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmFilter;
+import ru.yandex.practicum.filmorate.model.FilmLike;
 import ru.yandex.practicum.filmorate.service.FilmService;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.time.LocalDate;
 import java.time.Month;
 import java.util.List;
@@ -19,20 +31,35 @@ import java.util.List;
 @RequiredArgsConstructor
 public class FilmController {
 
+    private static final int DEFAULT_PAGE_SIZE = 100;
     private final FilmService filmService;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final PopularFilmsCache popularFilmsCache;
     private static final Logger logger = (Logger) LoggerFactory.getLogger(FilmController.class);
 
 
     @GetMapping
-    public List<Film> findAll() {
-        logger.info("Запрос на получение данных о всех фильмах");
-        return filmService.findAll();
+    public List<Film> findAll(@RequestParam(required = false) Integer limit, @RequestParam(required = false) Long after) {
+        if (limit == null && after == null) {
+            logger.info("Запрос на получение данных о всех фильмах");
+            return filmService.findAll();
+        }
+        logger.info("Запрос на получение страницы фильмов после Id: {}, размер страницы: {}", after, limit);
+        return filmService.findPage(after, limit == null ? DEFAULT_PAGE_SIZE : limit);
+    }
+
+    @GetMapping(produces = NdjsonStreams.MEDIA_TYPE)
+    public StreamingResponseBody streamAll() {
+        logger.info("Запрос на потоковую выгрузку всех фильмов");
+        return NdjsonStreams.write(objectMapper, filmService::forEach);
     }
 
     @GetMapping("/{id}")
-    public Film getFilmById(@PathVariable Long id) {
+    public ResponseEntity<Film> getFilmById(@PathVariable Long id,
+                                            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         logger.info("Запрос на получение данных о фильме с Id: {}", id);
-        return filmService.findById(id);
+        return ConditionalResponses.ifNoneMatch(ifNoneMatch, filmService.versionTag(id), () -> filmService.findById(id));
     }
 
     @PutMapping("{id}/like/{userId}")
@@ -47,10 +74,35 @@ public class FilmController {
         return filmService.removeLike(id, userId);
     }
 
-    @GetMapping("/popular")
-    public List<Film> getPopularFilms(@RequestParam(defaultValue = "10", name = "count") int count) {
+    @PutMapping("/likes")
+    public List<BatchResult<FilmLike>> addLikes(@RequestBody List<FilmLike> likes) {
+        logger.info("Запрос на пакетную установку лайков, количество: {}", likes.size());
+        return filmService.addLikes(likes);
+    }
+
+    @DeleteMapping("/likes")
+    public List<BatchResult<FilmLike>> removeLikes(@RequestBody List<FilmLike> likes) {
+        logger.info("Запрос на пакетное удаление лайков, количество: {}", likes.size());
+        return filmService.removeLikes(likes);
+    }
+
+    @GetMapping("/filter")
+    public List<Film> filterFilms(FilmFilter filter, @RequestParam(defaultValue = "100", name = "count") int count) {
+        logger.info("Запрос на выборку фильмов по диапазонам: {}", filter);
+        return filmService.filterFilms(filter, count);
+    }
+
+    @GetMapping("/search")
+    public List<Film> searchFilms(@RequestParam(name = "q") String query,
+                                  @RequestParam(defaultValue = "10", name = "count") int count) {
+        logger.info("Запрос на поиск фильмов по строке: {}", query);
+        return filmService.searchFilms(query, count);
+    }
+
+    @GetMapping(value = "/popular", produces = MediaType.APPLICATION_JSON_VALUE)
+    public byte[] getPopularFilms(@RequestParam(defaultValue = "10", name = "count") int count) {
         logger.info("Запрос на получение {} самых популярных фильмов в базе", count);
-        return filmService.getPopularFilms(count);
+        return popularFilmsCache.get(count);
     }
 
     @PostMapping
@@ -61,6 +113,18 @@ public class FilmController {
         return filmService.create(film);
     }
 
+    @PostMapping(value = "/import", consumes = {MediaType.APPLICATION_JSON_VALUE, NdjsonStreams.MEDIA_TYPE})
+    public ImportReport importFilms(InputStream body) throws IOException {
+        logger.info("Запрос на массовый импорт фильмов");
+        ImportReport report = BulkImports.read(objectMapper, validator, body, Film.class, film -> {
+            filmValidate(film);
+            filmService.prepareNew(film);
+        }, filmService::createAll);
+        logger.info("Импорт фильмов завершён: получено {}, сохранено {}, отклонено {}",
+                report.getReceived(), report.getImported(), report.getRejected());
+        return report;
+    }
+
     @PutMapping
     public Film updateFilm(@Valid @RequestBody Film newFilm) {
         logger.info("Запрос на обновление данных фильма с ID: {}", newFilm.getId());
@@ -0,0 +1,170 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.annotation.Timed;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.service.FilmChangedEvent;
+import ru.yandex.practicum.filmorate.service.FilmService;
+
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Готовые байты ответа GET /films/popular для каждого count: между изменениями рейтинга ответ
+// не собирается и не сериализуется заново. Ответ устаревает, только если изменение может его затронуть:
+// поменялся фильм из ответа или лайки вывели фильм на уровень последнего места в нём.
+// Устаревший ответ ещё отдаётся, пока изменению не больше max-staleness, а пересчёт тем временем идёт в фоне;
+// параллельные запросы ждут один общий пересчёт, а не запускают каждый свой
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PopularFilmsCache {
+    private final FilmService filmService;
+    private final ObjectMapper objectMapper;
+    @Qualifier("applicationTaskExecutor")
+    private final Executor executor;
+    @Value("${filmorate.popular-cache.max-staleness:PT0.5S}")
+    private final Duration maxStaleness;
+    // большие count запрашивают редко, и держать их ответы в памяти незачем
+    @Value("${filmorate.popular-cache.max-count:100}")
+    private final int maxCount;
+    private final Map<Integer, Entry> entries = new ConcurrentHashMap<>();
+
+    // время ответа на GET /films/popular вместе с попаданиями в кэш; сами пересчёты
+    // измеряет таймер filmorate.service.films с тегом method=getPopularFilms
+    @Timed(value = "filmorate.films.popular", histogram = true, percentiles = {0.5, 0.95, 0.99})
+    public byte[] get(int count) {
+        if (count <= 0 || count > maxCount) {
+            return serialize(filmService.getPopularFilms(count));
+        }
+        Entry entry = entries.computeIfAbsent(count, Entry::new);
+        Snapshot snapshot = entry.snapshot.get();
+        long version = entry.version.get();
+        if (snapshot != null && snapshot.version() == version) {
+            return snapshot.body();
+        }
+        long changedAt = entry.changedAt.get();
+        if (snapshot != null && changedAt != 0 && System.nanoTime() - changedAt < maxStaleness.toNanos()) {
+            refresh(entry, version);
+            return snapshot.body();
+        }
+        try {
+            return refresh(entry, version).join().body();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    @EventListener
+    public void onFilmChanged(FilmChangedEvent event) {
+        entries.values().forEach(entry -> {
+            if (affects(entry.snapshot.get(), event)) {
+                entry.version.incrementAndGet();
+                entry.changedAt.compareAndSet(0, System.nanoTime());
+            }
+        });
+    }
+
+    private boolean affects(Snapshot snapshot, FilmChangedEvent event) {
+        if (snapshot == null || event.filmId() == null || Arrays.binarySearch(snapshot.filmIds(), event.filmId()) >= 0) {
+            return true;
+        }
+        if (event.likes() == FilmChangedEvent.LIKES_UNCHANGED) {
+            return false;
+        }
+        // при равенстве лайков выше фильм с меньшим ID, поэтому вытеснить последний может и равный ему
+        return !snapshot.complete() || event.likes() >= snapshot.minLikes();
+    }
+
+    // К идущему пересчёту присоединяются, только если он начат не раньше изменения version:
+    // иначе его ответ уже устарел бы, и вместо него запускается новый
+    private CompletableFuture<Snapshot> refresh(Entry entry, long version) {
+        while (true) {
+            Refresh running = entry.refresh.get();
+            if (running != null && running.version() >= version) {
+                return running.result();
+            }
+            // версия и время берутся до расчёта: изменение, пришедшее во время него, оставит ответ устаревшим,
+            // а временем изменения будет считаться начало расчёта
+            Refresh started = new Refresh(new CompletableFuture<>(), entry.version.get(), System.nanoTime());
+            if (entry.refresh.compareAndSet(running, started)) {
+                executor.execute(() -> {
+                    try {
+                        started.result().complete(compute(entry, started));
+                    } catch (RuntimeException e) {
+                        log.error("Не удалось пересчитать популярные фильмы, count: {}", entry.count, e);
+                        started.result().completeExceptionally(e);
+                    } finally {
+                        entry.refresh.compareAndSet(started, null);
+                    }
+                });
+                return started.result();
+            }
+        }
+    }
+
+    // Ответ публикуется, только если он не старше уже опубликованного: вытесненный пересчёт
+    // может закончиться позже начатого после него
+    private Snapshot compute(Entry entry, Refresh refresh) {
+        List<Film> films = filmService.getPopularFilms(entry.count);
+        long[] filmIds = films.stream().mapToLong(Film::getId).sorted().toArray();
+        int minLikes = films.isEmpty() ? 0 : films.getLast().getLikesCount();
+        Snapshot snapshot = new Snapshot(serialize(films), filmIds, minLikes, films.size() == entry.count,
+                refresh.version());
+        Snapshot published = entry.snapshot.accumulateAndGet(snapshot,
+                (current, computed) -> current == null || current.version() <= computed.version() ? computed : current);
+        if (published == snapshot) {
+            entry.changedAt.set(0);
+            if (entry.version.get() != refresh.version()) {
+                entry.changedAt.compareAndSet(0, refresh.startedAt());
+            }
+        }
+        return snapshot;
+    }
+
+    private byte[] serialize(List<Film> films) {
+        try {
+            return objectMapper.writeValueAsBytes(films);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static final class Entry {
+        private final int count;
+        // растёт при каждом изменении, затрагивающем ответ; ответ свежий, пока версии совпадают
+        private final AtomicLong version = new AtomicLong();
+        // время самого раннего изменения, ещё не попавшего в ответ; 0 — таких нет
+        private final AtomicLong changedAt = new AtomicLong();
+        private final AtomicReference<Refresh> refresh = new AtomicReference<>();
+        private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+
+        private Entry(int count) {
+            this.count = count;
+        }
+    }
+
+    private record Refresh(CompletableFuture<Snapshot> result, long version, long startedAt) {
+    }
+
+    private record Snapshot(byte[] body, long[] filmIds, int minLikes, boolean complete, long version) {
+    }
+}
@@ -1,15 +1,28 @@
 package ru.yandex.practicum.filmorate.controller;
 
 import ch.qos.logback.classic.Logger;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.validation.Valid;
+import jakarta.validation.Validator;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.BatchResult;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.ImportReport;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
 import ru.yandex.practicum.filmorate.service.UserService;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.time.LocalDate;
 import java.util.List;
 
@@ -17,20 +30,35 @@ import java.util.List;
 @RequestMapping("/users")
 @RequiredArgsConstructor
 public class UserController {
+    private static final int DEFAULT_PAGE_SIZE = 100;
     private final UserService userService;
+    private final FilmService filmService;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
     private static final Logger logger = (Logger) LoggerFactory.getLogger(UserController.class);
 
 
     @GetMapping
-    public List<User> findAll() {
-        logger.info("Запрос на получение данных о всех пользователях");
-        return userService.findAll();
+    public List<User> findAll(@RequestParam(required = false) Integer limit, @RequestParam(required = false) Long after) {
+        if (limit == null && after == null) {
+            logger.info("Запрос на получение данных о всех пользователях");
+            return userService.findAll();
+        }
+        logger.info("Запрос на получение страницы пользователей после Id: {}, размер страницы: {}", after, limit);
+        return userService.findPage(after, limit == null ? DEFAULT_PAGE_SIZE : limit);
+    }
+
+    @GetMapping(produces = NdjsonStreams.MEDIA_TYPE)
+    public StreamingResponseBody streamAll() {
+        logger.info("Запрос на потоковую выгрузку всех пользователей");
+        return NdjsonStreams.write(objectMapper, userService::forEach);
     }
 
     @GetMapping("/{id}")
-    public User getUserById(@PathVariable Long id) {
+    public ResponseEntity<User> getUserById(@PathVariable Long id,
+                                            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         logger.info("Запрос на получение данных о пользователе с Id: {}", id);
-        return userService.findById(id);
+        return ConditionalResponses.ifNoneMatch(ifNoneMatch, userService.versionTag(id), () -> userService.findById(id));
     }
 
     @PutMapping("/{id}/friends/{friendId}")
@@ -45,10 +73,23 @@ public class UserController {
         return userService.deleteFriend(id, friendId);
     }
 
+    @PutMapping("/friends")
+    public List<BatchResult<Friendship>> addFriends(@RequestBody List<Friendship> friendships) {
+        logger.info("Запрос на пакетное добавление в друзья, количество пар: {}", friendships.size());
+        return userService.addFriends(friendships);
+    }
+
+    @DeleteMapping("/friends")
+    public List<BatchResult<Friendship>> deleteFriends(@RequestBody List<Friendship> friendships) {
+        logger.info("Запрос на пакетное удаление из друзей, количество пар: {}", friendships.size());
+        return userService.deleteFriends(friendships);
+    }
+
     @GetMapping("/{id}/friends")
-    public List<User> getFriends(@PathVariable Long id) {
+    public ResponseEntity<List<User>> getFriends(@PathVariable Long id,
+                                                 @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         logger.info("Запрос на получение списка друзей пользователя с Id: {}", id);
-        return userService.getFriends(id);
+        return ConditionalResponses.ifNoneMatch(ifNoneMatch, userService.friendsVersionTag(id), () -> userService.getFriends(id));
     }
 
     @GetMapping("/{id}/friends/common/{otherId}")
@@ -57,6 +98,26 @@ public class UserController {
         return userService.getCommonFriends(id, otherId);
     }
 
+    @GetMapping("/{id}/recommendations/friends")
+    public List<User> getFriendRecommendations(@PathVariable Long id,
+                                               @RequestParam(defaultValue = "10", name = "count") int count) {
+        logger.info("Запрос на получение {} рекомендаций друзей для пользователя с Id: {}", count, id);
+        return userService.getFriendRecommendations(id, count);
+    }
+
+    @GetMapping("/{id}/likes")
+    public List<Film> getLikedFilms(@PathVariable Long id) {
+        logger.info("Запрос на получение фильмов, лайкнутых пользователем с Id: {}", id);
+        return filmService.getLikedFilms(id);
+    }
+
+    @GetMapping("/{id}/recommendations/films")
+    public List<Film> getFilmRecommendations(@PathVariable Long id,
+                                             @RequestParam(defaultValue = "10", name = "count") int count) {
+        logger.info("Запрос на получение {} рекомендаций фильмов для пользователя с Id: {}", count, id);
+        return filmService.getFilmRecommendations(id, count);
+    }
+
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
     public User createUser(@Valid @RequestBody User user) {
@@ -65,6 +126,18 @@ public class UserController {
         return userService.create(user);
     }
 
+    @PostMapping(value = "/import", consumes = {MediaType.APPLICATION_JSON_VALUE, NdjsonStreams.MEDIA_TYPE})
+    public ImportReport importUsers(InputStream body) throws IOException {
+        logger.info("Запрос на массовый импорт пользователей");
+        ImportReport report = BulkImports.read(objectMapper, validator, body, User.class, user -> {
+            userDataValidate(user);
+            userService.prepareNew(user);
+        }, userService::createAll);
+        logger.info("Импорт пользователей завершён: получено {}, сохранено {}, отклонено {}",
+                report.getReceived(), report.getImported(), report.getRejected());
+        return report;
+    }
+
     @PutMapping
     public User updateUser(@Valid @RequestBody User newUser) {
         logger.info("Запрос на обновление данных пользователя с ID: {}", newUser.getId());
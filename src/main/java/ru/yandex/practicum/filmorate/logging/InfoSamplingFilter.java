@@ -0,0 +1,51 @@
+package ru.yandex.practicum.filmorate.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.slf4j.Marker;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Пропускает в лог только долю INFO-записей выбранных логгеров (контроллеры и сервисы пишут INFO на каждый вызов).
+// Турбо-фильтр срабатывает до создания события, поэтому отброшенная запись не форматируется и не попадает в очередь.
+// Предупреждения и ошибки, как и другие логгеры, не сэмплируются
+public class InfoSamplingFilter extends TurboFilter {
+    private static final String[] NO_LOGGERS = new String[0];
+
+    private volatile double rate = 1.0;
+    private volatile String[] loggers = NO_LOGGERS;
+
+    // доля записей от 0 до 1
+    public void setRate(double rate) {
+        if (rate < 0 || rate > 1) {
+            throw new IllegalArgumentException("Доля сэмплирования должна быть от 0 до 1: " + rate);
+        }
+        this.rate = rate;
+    }
+
+    // префиксы имён логгеров через запятую
+    public void setLoggers(String loggers) {
+        this.loggers = Arrays.stream(loggers.split(",")).map(String::trim).filter(name -> !name.isEmpty())
+                .toArray(String[]::new);
+    }
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params, Throwable t) {
+        if (level != Level.INFO || rate >= 1 || !sampled(logger.getName())) {
+            return FilterReply.NEUTRAL;
+        }
+        return ThreadLocalRandom.current().nextDouble() < rate ? FilterReply.NEUTRAL : FilterReply.DENY;
+    }
+
+    private boolean sampled(String name) {
+        for (String prefix : loggers) {
+            if (name.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,27 @@
+package ru.yandex.practicum.filmorate.logging;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.zalando.logbook.HttpRequest;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Predicate;
+
+// Сэмплирование HTTP-логов Logbook: бин с именем requestCondition заменяет условие по умолчанию.
+// Решение принимается один раз на запрос до чтения тела, поэтому невыбранный запрос не буферизуется
+// и не форматируется; исключения logbook.predicate.* применяются поверх него
+@Configuration
+public class LoggingConfig {
+
+    @Bean
+    public Predicate<HttpRequest> requestCondition(@Value("${filmorate.logging.http-sample-rate:1.0}") double rate) {
+        if (rate < 0 || rate > 1) {
+            throw new IllegalArgumentException("Доля сэмплирования должна быть от 0 до 1: " + rate);
+        }
+        if (rate == 1) {
+            return request -> true;
+        }
+        return request -> ThreadLocalRandom.current().nextDouble() < rate;
+    }
+}
@@ -0,0 +1,28 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+
+@Component
+@RequiredArgsConstructor
+public class StorageMetrics implements MeterBinder {
+    private final FilmStorage films;
+    private final UserStorage users;
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("filmorate.storage.size", films, FilmStorage::count)
+                .tag("entity", "films")
+                .description("Количество фильмов в хранилище")
+                .register(registry);
+        Gauge.builder("filmorate.storage.size", users, UserStorage::count)
+                .tag("entity", "users")
+                .description("Количество пользователей в хранилище")
+                .register(registry);
+    }
+}
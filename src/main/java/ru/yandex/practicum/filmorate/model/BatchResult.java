@@ -0,0 +1,21 @@
+package ru.yandex.practicum.filmorate.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonUnwrapped;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+// Результат обработки одного элемента пакетного запроса: поля самого элемента и его статус
+@Data
+@AllArgsConstructor
+public class BatchResult<T> {
+    @JsonUnwrapped
+    private T item;
+    private BatchStatus status;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String message;
+
+    public static <T> BatchResult<T> of(T item, BatchStatus status) {
+        return new BatchResult<>(item, status, null);
+    }
+}
@@ -0,0 +1,8 @@
+package ru.yandex.practicum.filmorate.model;
+
+public enum BatchStatus {
+    APPLIED,
+    UNCHANGED,
+    NOT_FOUND,
+    INVALID
+}
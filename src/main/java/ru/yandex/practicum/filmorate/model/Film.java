@@ -1,12 +1,14 @@
 package ru.yandex.practicum.filmorate.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+import ru.yandex.practicum.filmorate.util.LongSortedSet;
 
 import java.time.LocalDate;
-import java.util.HashSet;
-import java.util.Set;
 
 @Data
 public class Film {
@@ -18,6 +20,16 @@ public class Film {
     private String description;
     private LocalDate releaseDate;
     private Long duration;
-    private int likesCount;
-    private Set<Long> likedUserIds = new HashSet<>();
+    @JsonIgnore
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private FilmLikes likes = new FilmLikes();
+
+    public int getLikesCount() {
+        return likes.count();
+    }
+
+    public LongSortedSet getLikedUserIds() {
+        return likes.userIds();
+    }
 }
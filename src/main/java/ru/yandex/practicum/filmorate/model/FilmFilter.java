@@ -0,0 +1,39 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Data;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.LocalDate;
+
+// Условия выборки фильмов по диапазонам даты выхода и продолжительности; границы включаются, пустая граница не ограничивает.
+// По умолчанию фильмы упорядочены по дате выхода (если задан её диапазон) или по продолжительности,
+// с popular=true — по числу лайков
+@Data
+public class FilmFilter {
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate releasedFrom;
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate releasedTo;
+    private Long minDuration;
+    private Long maxDuration;
+    private boolean popular;
+
+    public boolean hasReleaseRange() {
+        return releasedFrom != null || releasedTo != null;
+    }
+
+    public boolean hasDurationRange() {
+        return minDuration != null || maxDuration != null;
+    }
+
+    public boolean matches(Film film) {
+        if (hasReleaseRange() && (film.getReleaseDate() == null
+                || releasedFrom != null && film.getReleaseDate().isBefore(releasedFrom)
+                || releasedTo != null && film.getReleaseDate().isAfter(releasedTo))) {
+            return false;
+        }
+        return !hasDurationRange() || film.getDuration() != null
+                && (minDuration == null || film.getDuration() >= minDuration)
+                && (maxDuration == null || film.getDuration() <= maxDuration);
+    }
+}
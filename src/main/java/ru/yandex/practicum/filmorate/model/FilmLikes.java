@@ -0,0 +1,48 @@
+package ru.yandex.practicum.filmorate.model;
+
+import ru.yandex.practicum.filmorate.util.LongSortedSet;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// Лайки одного фильма: счётчик и множество лайкнувших пользователей меняются
+// без перезаписи самого фильма
+public class FilmLikes {
+    private final LongAdder count = new LongAdder();
+    private final LongSortedSet userIds = new LongSortedSet();
+
+    public FilmLikes() {
+    }
+
+    public FilmLikes(long[] userIds) {
+        this.userIds.addAll(userIds);
+        count.add(this.userIds.size());
+    }
+
+    public boolean add(long userId) {
+        if (!userIds.add(userId)) {
+            return false;
+        }
+        count.increment();
+        return true;
+    }
+
+    public boolean remove(long userId) {
+        if (!userIds.remove(userId)) {
+            return false;
+        }
+        count.decrement();
+        return true;
+    }
+
+    public int count() {
+        return count.intValue();
+    }
+
+    public boolean contains(long userId) {
+        return userIds.contains(userId);
+    }
+
+    public LongSortedSet userIds() {
+        return userIds;
+    }
+}
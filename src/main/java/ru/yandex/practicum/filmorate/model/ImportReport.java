@@ -0,0 +1,49 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Итог массового импорта. Хранятся только счётчики и первые ошибки, поэтому размер отчёта
+// не зависит от объёма загрузки
+@Getter
+public class ImportReport {
+    private static final int MAX_ERRORS = 100;
+
+    private long received;
+    private long imported;
+    private long rejected;
+    private boolean completed = true;
+    private final List<RecordError> errors = new ArrayList<>();
+
+    public long nextRecord() {
+        return received++;
+    }
+
+    public void imported(int count) {
+        imported += count;
+    }
+
+    public void reject(long index, String message) {
+        rejected++;
+        if (errors.size() < MAX_ERRORS) {
+            errors.add(new RecordError(index, message));
+        }
+    }
+
+    // Разбор прерван: записи после ошибки не прочитаны, уже принятые сохранены
+    public void abort(String message) {
+        completed = false;
+        errors.add(new RecordError(received, message));
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class RecordError {
+        private long index;
+        private String message;
+    }
+}
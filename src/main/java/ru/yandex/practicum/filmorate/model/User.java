@@ -1,13 +1,13 @@
 package ru.yandex.practicum.filmorate.model;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import lombok.Data;
+import ru.yandex.practicum.filmorate.util.LongSortedSet;
 
 import java.time.LocalDate;
-import java.util.HashSet;
-import java.util.Set;
 
 @Data
 public class User {
@@ -21,5 +21,6 @@ public class User {
     private String login;
     private String name;
     private LocalDate birthday;
-    private final Set<Long> friendIds = new HashSet<>();
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private final LongSortedSet friendIds = new LongSortedSet();
 }
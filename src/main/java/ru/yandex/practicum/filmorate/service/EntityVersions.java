@@ -0,0 +1,32 @@
+package ru.yandex.practicum.filmorate.service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Счётчики версий сущностей для условных GET: сервис присваивает сущности новую версию после каждого изменения,
+// а контроллер сравнивает её с If-None-Match, не читая хранилище. Версии живут только в памяти,
+// поэтому в метку входит время запуска: после перезапуска прежние ETag не совпадут ни с одной новой меткой.
+// Версии берутся из общего счётчика и не повторяются. При очистке хранилища записи удаляются, а все сущности
+// получают базовую версию новее любой выданной, поэтому карта не растёт дольше, чем живут сами сущности
+class EntityVersions {
+    private final String epoch = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+    private final AtomicLong clock = new AtomicLong();
+    private final Map<Long, Long> versions = new ConcurrentHashMap<>();
+    private volatile long baseline;
+
+    void bump(long id) {
+        versions.merge(id, clock.incrementAndGet(), Math::max);
+    }
+
+    // запись, успевшая попасть в карту во время очистки, старше базовой версии и ни на что не влияет
+    void bumpAll() {
+        baseline = clock.incrementAndGet();
+        versions.clear();
+    }
+
+    // метку нужно брать до чтения данных: тогда изменение, случившееся между ними, даст новую метку на следующем запросе
+    String tag(long id) {
+        return epoch + "-" + Math.max(baseline, versions.getOrDefault(id, 0L));
+    }
+}
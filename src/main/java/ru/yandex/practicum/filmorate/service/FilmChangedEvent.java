@@ -0,0 +1,9 @@
+package ru.yandex.practicum.filmorate.service;
+
+// Изменение, способное затронуть рейтинг популярных фильмов: likes — новое число лайков фильма
+// или LIKES_UNCHANGED, если менялись только его данные; ALL — массовое изменение, после которого
+// рейтинг нужно считать заново целиком
+public record FilmChangedEvent(Long filmId, int likes) {
+    public static final int LIKES_UNCHANGED = -1;
+    public static final FilmChangedEvent ALL = new FilmChangedEvent(null, LIKES_UNCHANGED);
+}
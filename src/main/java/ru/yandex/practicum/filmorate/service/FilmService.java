@@ -1,31 +1,69 @@
 package ru.yandex.practicum.filmorate.service;
 
+import io.micrometer.core.annotation.Counted;
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.BatchResult;
+import ru.yandex.practicum.filmorate.model.BatchStatus;
 import ru.yandex.practicum.filmorate.model.Film;
-import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.FilmFilter;
+import ru.yandex.practicum.filmorate.model.FilmLike;
 import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.LikeStorage;
 import ru.yandex.practicum.filmorate.storage.UserStorage;
 
-import java.util.Comparator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 @Slf4j
 @Service
+@Timed("filmorate.service.films")
 @RequiredArgsConstructor
 public class FilmService {
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int MAX_BATCH_SIZE = 10_000;
 
     private final FilmStorage films;
     private final UserStorage users;
+    private final LikeStorage likes;
+    private final ApplicationEventPublisher events;
+    private final EntityVersions versions = new EntityVersions();
 
     public List<Film> findAll() {
         return films.findAll();
     }
 
+    public List<Film> findPage(Long afterId, int limit) {
+        if (limit <= 0 || limit > MAX_PAGE_SIZE) {
+            throw new ValidationException("Параметр limit должен быть от 1 до " + MAX_PAGE_SIZE);
+        }
+        return films.findPage(afterId, limit);
+    }
+
+    public void forEach(Consumer<Film> action) {
+        films.forEach(action);
+    }
+
+    // ETag фильма для условного GET: меняется при каждом изменении фильма или его лайков
+    public String versionTag(Long id) {
+        return versions.tag(id);
+    }
+
     public Film findById(Long id) {
         log.info("Выполнение запроса поиска фильма с id: {} в хранилище", id);
         Optional<Film> byId = films.findById(id);
@@ -45,55 +83,187 @@ public class FilmService {
             log.error("Не найден фильм для обновления, ID: {}", newFilm.getId());
             throw new NotFoundException("Фильм не найден");
         }
+        // хранимый (и закэшированный) объект не меняется на месте: до успешной записи читатели видят прежние данные,
+        // а при ошибке записи они и остаются; лайки живут отдельно и переходят в копию как есть
         Film oldFilm = byId.get();
-        oldFilm.setName(newFilm.getName());
-        Optional.ofNullable(newFilm.getDescription()).ifPresent(oldFilm::setDescription);
-        Optional.ofNullable(newFilm.getReleaseDate()).ifPresent(oldFilm::setReleaseDate);
-        Optional.ofNullable(newFilm.getDuration()).ifPresent(oldFilm::setDuration);
+        Film updatedFilm = new Film();
+        updatedFilm.setId(oldFilm.getId());
+        updatedFilm.setName(newFilm.getName());
+        updatedFilm.setDescription(Optional.ofNullable(newFilm.getDescription()).orElse(oldFilm.getDescription()));
+        updatedFilm.setReleaseDate(Optional.ofNullable(newFilm.getReleaseDate()).orElse(oldFilm.getReleaseDate()));
+        updatedFilm.setDuration(Optional.ofNullable(newFilm.getDuration()).orElse(oldFilm.getDuration()));
+        updatedFilm.setLikes(oldFilm.getLikes());
+        Film updated = films.update(updatedFilm);
         log.info("Данные фильма успешно обновлены. ID: {}", newFilm.getId());
-        return films.update(oldFilm);
+        versions.bump(updated.getId());
+        events.publishEvent(new FilmChangedEvent(updated.getId(), FilmChangedEvent.LIKES_UNCHANGED));
+        return updated;
     }
 
+    @Counted("filmorate.likes.added")
     public int addLike(Long filmId, Long userId) {
-        Film film = films.findById(filmId).orElseThrow(() -> new NotFoundException("Фильм с id: " + filmId + " не найден."));
-        User user = users.findById(userId).orElseThrow(() -> new NotFoundException("Пользователь с id: " + userId + " не найден."));
-        if (film.getLikedUserIds().contains(userId)) {
-            return film.getLikesCount();
-        }
-        film.setLikesCount(film.getLikesCount() + 1);
-        film.getLikedUserIds().add(user.getId());
-        films.update(film);
-        return film.getLikesCount();
+        checkFilmAndUserExist(filmId, userId);
+        return likeChanged(filmId, likes.addLike(filmId, userId));
     }
 
+    @Counted("filmorate.likes.removed")
     public int removeLike(Long filmId, Long userId) {
-        Film film = films.findById(filmId).orElseThrow(() -> new NotFoundException("Фильм с id: " + filmId + " не найден."));
-        User user = users.findById(userId).orElseThrow(() -> new NotFoundException("Пользователь с id: " + userId + " не найден."));
-        if (film.getLikedUserIds().contains(userId)) {
-            film.setLikesCount(film.getLikesCount() - 1);
-            film.getLikedUserIds().remove(user.getId());
-            films.update(film);
-        }
-        return film.getLikesCount();
+        checkFilmAndUserExist(filmId, userId);
+        return likeChanged(filmId, likes.removeLike(filmId, userId));
+    }
+
+    public List<BatchResult<FilmLike>> addLikes(List<FilmLike> batch) {
+        return applyLikes(batch, likes::addLikes);
+    }
+
+    public List<BatchResult<FilmLike>> removeLikes(List<FilmLike> batch) {
+        return applyLikes(batch, likes::removeLikes);
     }
 
     public Film create(Film createdFilm) {
+        prepareNew(createdFilm);
+        Film created = films.create(createdFilm);
+        events.publishEvent(new FilmChangedEvent(created.getId(), 0));
+        return created;
+    }
+
+    // Проверки нового фильма, не зависящие от хранилища; используются и при массовом импорте
+    public void prepareNew(Film createdFilm) {
         if (createdFilm.getId() != null) {
             log.error("В запросе на создание присутствует ID фильма");
             throw new ValidationException("Фильм с id: " + createdFilm.getId() + " уже существует");
         }
-        return films.create(createdFilm);
+    }
+
+    public List<Film> createAll(List<Film> createdFilms) {
+        List<Film> created = films.createAll(createdFilms);
+        events.publishEvent(FilmChangedEvent.ALL);
+        return created;
     }
 
     public void deleteAll() {
         films.deleteAll();
+        likes.deleteAll();
+        versions.bumpAll();
+        events.publishEvent(FilmChangedEvent.ALL);
     }
 
     public List<Film> getPopularFilms(int count) {
         if (count <= 0) {
             throw new ValidationException("Параметр count должен быть больше нуля");
         }
-        return films.findAll().stream().sorted(Comparator.comparingInt(Film::getLikesCount).reversed()).limit(count).toList();
+        return likes.findPopularFilmIds(count).stream().map(films::findById).flatMap(Optional::stream).toList();
+    }
+
+    public List<Film> filterFilms(FilmFilter filter, int count) {
+        if (!filter.hasReleaseRange() && !filter.hasDurationRange()) {
+            throw new ValidationException("Нужно указать диапазон даты выхода или продолжительности");
+        }
+        if (filter.getReleasedFrom() != null && filter.getReleasedTo() != null
+                && filter.getReleasedFrom().isAfter(filter.getReleasedTo())) {
+            throw new ValidationException("Начало диапазона дат выхода позже его конца");
+        }
+        if (filter.getMinDuration() != null && filter.getMaxDuration() != null
+                && filter.getMinDuration() > filter.getMaxDuration()) {
+            throw new ValidationException("Минимальная продолжительность больше максимальной");
+        }
+        if (count <= 0 || count > MAX_PAGE_SIZE) {
+            throw new ValidationException("Параметр count должен быть от 1 до " + MAX_PAGE_SIZE);
+        }
+        return inOrder(films.findIds(filter, count));
+    }
+
+    public List<Film> searchFilms(String query, int count) {
+        if (query == null || query.isBlank()) {
+            throw new ValidationException("Строка поиска не должна быть пустой");
+        }
+        if (count <= 0 || count > MAX_PAGE_SIZE) {
+            throw new ValidationException("Параметр count должен быть от 1 до " + MAX_PAGE_SIZE);
+        }
+        return inOrder(films.search(query, count));
+    }
+
+    public List<Film> getLikedFilms(Long userId) {
+        users.findById(userId).orElseThrow(() -> new NotFoundException("Пользователь с id: " + userId + " не найден"));
+        return inOrder(likes.findLikedFilmIds(userId));
+    }
+
+    public List<Film> getFilmRecommendations(Long userId, int count) {
+        if (count <= 0 || count > MAX_PAGE_SIZE) {
+            throw new ValidationException("Параметр count должен быть от 1 до " + MAX_PAGE_SIZE);
+        }
+        users.findById(userId).orElseThrow(() -> new NotFoundException("Пользователь с id: " + userId + " не найден"));
+        return inOrder(likes.findFilmRecommendations(userId, count));
+    }
+
+    // хранилище может вернуть фильмы в другом порядке, поэтому порядок рейтинга восстанавливается по ID
+    private List<Film> inOrder(long[] ids) {
+        Map<Long, Film> found = new HashMap<>();
+        films.findAllById(ids).forEach(film -> found.put(film.getId(), film));
+        return Arrays.stream(ids).mapToObj(found::get).filter(Objects::nonNull).toList();
+    }
+
+    // Существование фильмов и пользователей проверяется двумя пакетными запросами на весь пакет,
+    // после чего все корректные пары применяются к хранилищу за один вызов
+    private List<BatchResult<FilmLike>> applyLikes(List<FilmLike> batch, Function<List<FilmLike>, boolean[]> operation) {
+        if (batch.size() > MAX_BATCH_SIZE) {
+            throw new ValidationException("В пакете не может быть больше " + MAX_BATCH_SIZE + " элементов");
+        }
+        Set<Long> filmIds = new HashSet<>();
+        films.findAllById(distinctIds(batch, FilmLike::getFilmId)).forEach(film -> filmIds.add(film.getId()));
+        Set<Long> userIds = new HashSet<>();
+        users.findAllById(distinctIds(batch, FilmLike::getUserId)).forEach(user -> userIds.add(user.getId()));
+
+        List<BatchResult<FilmLike>> results = new ArrayList<>(Collections.nCopies(batch.size(), null));
+        List<FilmLike> accepted = new ArrayList<>(batch.size());
+        List<Integer> acceptedPositions = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            FilmLike like = batch.get(i);
+            if (like.getFilmId() == null || like.getUserId() == null) {
+                results.set(i, new BatchResult<>(like, BatchStatus.INVALID, "Не указан ID фильма или пользователя"));
+            } else if (!filmIds.contains(like.getFilmId())) {
+                results.set(i, new BatchResult<>(like, BatchStatus.NOT_FOUND, "Фильм с id: " + like.getFilmId() + " не найден."));
+            } else if (!userIds.contains(like.getUserId())) {
+                results.set(i, new BatchResult<>(like, BatchStatus.NOT_FOUND, "Пользователь с id: " + like.getUserId() + " не найден."));
+            } else {
+                accepted.add(like);
+                acceptedPositions.add(i);
+            }
+        }
+        boolean[] changed = operation.apply(accepted);
+        boolean anyChanged = false;
+        for (int i = 0; i < changed.length; i++) {
+            results.set(acceptedPositions.get(i),
+                    BatchResult.of(accepted.get(i), changed[i] ? BatchStatus.APPLIED : BatchStatus.UNCHANGED));
+            if (changed[i]) {
+                versions.bump(accepted.get(i).getFilmId());
+                anyChanged = true;
+            }
+        }
+        // новые числа лайков пакетные методы хранилища не возвращают, поэтому рейтинг пересчитывается целиком
+        if (anyChanged) {
+            events.publishEvent(FilmChangedEvent.ALL);
+        }
+        log.info("Пакетная обработка лайков: получено {}, применено к хранилищу {}", batch.size(), accepted.size());
+        return results;
+    }
+
+    private static long[] distinctIds(List<FilmLike> batch, Function<FilmLike, Long> id) {
+        return batch.stream().map(id).filter(Objects::nonNull).mapToLong(Long::longValue).distinct().toArray();
+    }
+
+    // повторный лайк или удаление несуществующего не меняют ни версию фильма, ни рейтинг
+    private int likeChanged(Long filmId, LikeStorage.LikeChange change) {
+        if (change.changed()) {
+            versions.bump(filmId);
+            events.publishEvent(new FilmChangedEvent(filmId, change.count()));
+        }
+        return change.count();
+    }
+
+    private void checkFilmAndUserExist(Long filmId, Long userId) {
+        films.findById(filmId).orElseThrow(() -> new NotFoundException("Фильм с id: " + filmId + " не найден."));
+        users.findById(userId).orElseThrow(() -> new NotFoundException("Пользователь с id: " + userId + " не найден."));
     }
 
 
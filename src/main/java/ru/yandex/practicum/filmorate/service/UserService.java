@@ -1,66 +1,94 @@
 package ru.yandex.practicum.filmorate.service;
 
-import jakarta.annotation.PostConstruct;
+import io.micrometer.core.annotation.Counted;
+import io.micrometer.core.annotation.Timed;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.BatchResult;
+import ru.yandex.practicum.filmorate.model.BatchStatus;
+import ru.yandex.practicum.filmorate.model.Friendship;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.storage.UserStorage;
 
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 @Slf4j
 @Service
+@Timed("filmorate.service.users")
 @RequiredArgsConstructor
 public class UserService {
-    private final UserStorage users;
-    private final Set<String> emailSet = new HashSet<>();
-    private final Set<String> loginSet = new HashSet<>();
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int MAX_BATCH_SIZE = 10_000;
 
-    @PostConstruct
-    public void initCredentialsSet() {
-        users.findAll().forEach(user -> emailSet.add(user.getEmail()));
-        users.findAll().forEach(user -> loginSet.add(user.getLogin()));
-    }
+    private final UserStorage users;
+    private final EntityVersions versions = new EntityVersions();
+    // список друзей меняется и вместе с составом дружб, и при правке профиля любого из друзей
+    private final EntityVersions friendListVersions = new EntityVersions();
 
 
+    @Counted("filmorate.friends.added")
     public User addFriend(Long userId, Long friendId) {
-        User user = users.findById(userId).orElseThrow(() -> new NotFoundException("Пользователь с id: " + userId + " не найден"));
-        User friend = users.findById(friendId).orElseThrow(() -> new NotFoundException("Пользователь с id: " + friendId + " не найден"));
-        if (user.getFriendIds().contains(friendId)) {
+        users.findById(userId).orElseThrow(() -> new NotFoundException("Пользователь с id: " + userId + " не найден"));
+        users.findById(friendId).orElseThrow(() -> new NotFoundException("Пользователь с id: " + friendId + " не найден"));
+        if (!users.addFriend(userId, friendId)) {
             throw new ValidationException("Пользователи уже являются друзьями");
         }
-        user.getFriendIds().add(friendId);
-        friend.getFriendIds().add(userId);
-        users.update(user);
-        users.update(friend);
-        return user;
+        friendshipChanged(userId, friendId);
+        return findById(userId);
     }
 
+    @Counted("filmorate.friends.removed")
     public User deleteFriend(Long userId, Long friendId) {
-        User user = users.findById(userId).orElseThrow(() -> new NotFoundException("Пользователь с id: " + userId + " не найден"));
-        User friend = users.findById(friendId).orElseThrow(() -> new NotFoundException("Пользователь с id: " + friendId + " не найден"));
-        if (user.getFriendIds().contains(friendId)) {
-            user.getFriendIds().remove(friendId);
-            friend.getFriendIds().remove(userId);
-            users.update(user);
-            users.update(friend);
+        users.findById(userId).orElseThrow(() -> new NotFoundException("Пользователь с id: " + userId + " не найден"));
+        users.findById(friendId).orElseThrow(() -> new NotFoundException("Пользователь с id: " + friendId + " не найден"));
+        if (users.removeFriend(userId, friendId)) {
+            friendshipChanged(userId, friendId);
         }
-        return user;
+        return findById(userId);
+    }
+
+    public List<BatchResult<Friendship>> addFriends(List<Friendship> batch) {
+        return applyFriendships(batch, users::addFriends);
+    }
+
+    public List<BatchResult<Friendship>> deleteFriends(List<Friendship> batch) {
+        return applyFriendships(batch, users::removeFriends);
+    }
+
+    // ETag пользователя и его списка друзей для условного GET
+    public String versionTag(Long id) {
+        return versions.tag(id);
+    }
+
+    public String friendsVersionTag(Long id) {
+        return friendListVersions.tag(id);
     }
 
     public List<User> getFriends(Long userId) {
         User user = users.findById(userId).orElseThrow(() -> new NotFoundException("Пользователь с id: " + userId + " не найден"));
-        return user.getFriendIds().stream().map(users::findById).flatMap(Optional::stream).toList();
+        return users.findAllById(user.getFriendIds().toArray());
     }
 
     public List<User> getCommonFriends(Long userId, Long otherId) {
         User user = users.findById(userId).orElseThrow(() -> new NotFoundException("Пользователь с id: " + userId + " не найден"));
         User other = users.findById(otherId).orElseThrow(() -> new NotFoundException("Пользователь с id: " + otherId + " не найден"));
-        return user.getFriendIds().stream().filter(other.getFriendIds()::contains).map(users::findById).flatMap(Optional::stream).toList();
+        return users.findAllById(user.getFriendIds().intersect(other.getFriendIds()));
+    }
+
+
+    public List<User> getFriendRecommendations(Long userId, int count) {
+        if (count <= 0 || count > MAX_PAGE_SIZE) {
+            throw new ValidationException("Параметр count должен быть от 1 до " + MAX_PAGE_SIZE);
+        }
+        users.findById(userId).orElseThrow(() -> new NotFoundException("Пользователь с id: " + userId + " не найден"));
+        return inOrder(users.findFriendRecommendations(userId, count));
     }
 
 
@@ -68,6 +96,17 @@ public class UserService {
         return users.findAll();
     }
 
+    public List<User> findPage(Long afterId, int limit) {
+        if (limit <= 0 || limit > MAX_PAGE_SIZE) {
+            throw new ValidationException("Параметр limit должен быть от 1 до " + MAX_PAGE_SIZE);
+        }
+        return users.findPage(afterId, limit);
+    }
+
+    public void forEach(Consumer<User> action) {
+        users.forEach(action);
+    }
+
 
     public User findById(Long id) {
         log.info("Выполнение запроса поиска пользователя с id: {} в хранилище", id);
@@ -75,21 +114,37 @@ public class UserService {
         if (byId.isEmpty()) {
             throw new NotFoundException("Пользователь не найден");
         }
-        log.info("Выполнение запроса поиска пользователя с id: {} в хранилище", id);
         return byId.get();
     }
 
 
     public User create(@Valid User createdUser) {
+        prepareNew(createdUser);
+        try {
+            return users.create(createdUser);
+        } catch (RuntimeException e) {
+            users.releaseCredentials(createdUser.getEmail(), createdUser.getLogin());
+            throw e;
+        }
+    }
+
+    // Проверяет нового пользователя и занимает его имейл и логин в хранилище; используется и при массовом импорте,
+    // поэтому дубликаты внутри одной загрузки тоже отклоняются
+    public void prepareNew(User createdUser) {
         if (createdUser.getId() != null) {
             log.error("В запросе на создание присутствует ID пользователя");
             throw new ValidationException("Новый пользователь не должен иметь Id до регистрации");
         }
-        emailAlreadyExists(createdUser.getEmail());
-        loginAlreadyExists(createdUser.getLogin());
-        emailSet.add(createdUser.getEmail());
-        loginSet.add(createdUser.getLogin());
-        return users.create(createdUser);
+        users.reserveCredentials(createdUser.getEmail(), createdUser.getLogin());
+    }
+
+    public List<User> createAll(List<User> createdUsers) {
+        try {
+            return users.createAll(createdUsers);
+        } catch (RuntimeException e) {
+            createdUsers.forEach(user -> users.releaseCredentials(user.getEmail(), user.getLogin()));
+            throw e;
+        }
     }
 
     public User update(@Valid User newUser) {
@@ -102,45 +157,87 @@ public class UserService {
             log.error("Не найден фильм для обновления, ID: {}", newUser.getId());
             throw new NotFoundException("Пользователь не найден");
         }
+        // хранимый объект не меняется на месте: хранилище заменяет его копией, проверив уникальность новых данных
         User oldUser = byId.get();
-        if (!Objects.equals(newUser.getEmail(), oldUser.getEmail())) {
-            emailAlreadyExists(newUser.getEmail());
-        }
-        if (!Objects.equals(newUser.getLogin(), oldUser.getLogin())) {
-            loginAlreadyExists(newUser.getLogin());
+        User updatedUser = new User();
+        updatedUser.setId(oldUser.getId());
+        updatedUser.setEmail(newUser.getEmail());
+        updatedUser.setLogin(newUser.getLogin());
+        updatedUser.setName(Optional.ofNullable(newUser.getName()).orElse(oldUser.getName()));
+        updatedUser.setBirthday(Optional.ofNullable(newUser.getBirthday()).orElse(oldUser.getBirthday()));
+        updatedUser.getFriendIds().addAll(oldUser.getFriendIds().toArray());
+        User updated = users.update(updatedUser);
+        versions.bump(updated.getId());
+        // дружба взаимная, поэтому пользователь входит в списки друзей ровно тех, кто есть в его собственном
+        for (long friendId : updated.getFriendIds().toArray()) {
+            friendListVersions.bump(friendId);
         }
-        emailSet.remove(oldUser.getEmail());
-        emailSet.add(newUser.getEmail());
-        loginSet.remove(oldUser.getEmail());
-        loginSet.add(newUser.getLogin());
-        oldUser.setLogin(newUser.getLogin());
-        oldUser.setEmail(newUser.getEmail());
-        Optional.ofNullable(newUser.getName()).ifPresent(oldUser::setName);
-        Optional.ofNullable(newUser.getBirthday()).ifPresent(oldUser::setBirthday);
         log.info("Данные пользователя успешно обновлены. ID: {}", newUser.getId());
-        return users.update(oldUser);
+        return updated;
     }
 
-    private void emailAlreadyExists(String email) {
-        if (emailSet.contains(email)) {
-            log.warn("Обнаружен уже используемый имейл: {}", email);
-            throw new ValidationException("Этот имейл уже используется!");
-        }
+    // хранилище может вернуть пользователей в другом порядке, поэтому порядок рейтинга восстанавливается по ID
+    private List<User> inOrder(long[] ids) {
+        Map<Long, User> found = new HashMap<>();
+        users.findAllById(ids).forEach(user -> found.put(user.getId(), user));
+        return Arrays.stream(ids).mapToObj(found::get).filter(Objects::nonNull).toList();
     }
 
-    private void loginAlreadyExists(String login) {
-        if (loginSet.contains(login)) {
-            log.warn("Обнаружен уже используемый логин: {}", login);
-            throw new ValidationException("Этот логин уже используется");
+    // Существование всех участников проверяется одним пакетным запросом,
+    // после чего все корректные пары применяются к хранилищу за один вызов
+    private List<BatchResult<Friendship>> applyFriendships(List<Friendship> batch,
+                                                           Function<List<Friendship>, boolean[]> operation) {
+        if (batch.size() > MAX_BATCH_SIZE) {
+            throw new ValidationException("В пакете не может быть больше " + MAX_BATCH_SIZE + " элементов");
+        }
+        long[] ids = batch.stream()
+                .flatMap(friendship -> Stream.of(friendship.getUserId(), friendship.getFriendId()))
+                .filter(Objects::nonNull).mapToLong(Long::longValue).distinct().toArray();
+        Set<Long> existingIds = new HashSet<>();
+        users.findAllById(ids).forEach(user -> existingIds.add(user.getId()));
+
+        List<BatchResult<Friendship>> results = new ArrayList<>(Collections.nCopies(batch.size(), null));
+        List<Friendship> accepted = new ArrayList<>(batch.size());
+        List<Integer> acceptedPositions = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            Friendship friendship = batch.get(i);
+            if (friendship.getUserId() == null || friendship.getFriendId() == null) {
+                results.set(i, new BatchResult<>(friendship, BatchStatus.INVALID, "Не указан ID пользователя или друга"));
+            } else if (friendship.getUserId().equals(friendship.getFriendId())) {
+                results.set(i, new BatchResult<>(friendship, BatchStatus.INVALID, "Нельзя добавить в друзья самого себя"));
+            } else if (!existingIds.contains(friendship.getUserId())) {
+                results.set(i, new BatchResult<>(friendship, BatchStatus.NOT_FOUND,
+                        "Пользователь с id: " + friendship.getUserId() + " не найден"));
+            } else if (!existingIds.contains(friendship.getFriendId())) {
+                results.set(i, new BatchResult<>(friendship, BatchStatus.NOT_FOUND,
+                        "Пользователь с id: " + friendship.getFriendId() + " не найден"));
+            } else {
+                accepted.add(friendship);
+                acceptedPositions.add(i);
+            }
+        }
+        boolean[] changed = operation.apply(accepted);
+        for (int i = 0; i < changed.length; i++) {
+            results.set(acceptedPositions.get(i),
+                    BatchResult.of(accepted.get(i), changed[i] ? BatchStatus.APPLIED : BatchStatus.UNCHANGED));
+            if (changed[i]) {
+                friendshipChanged(accepted.get(i).getUserId(), accepted.get(i).getFriendId());
+            }
         }
+        log.info("Пакетная обработка дружбы: получено {}, применено к хранилищу {}", batch.size(), accepted.size());
+        return results;
     }
 
-    public void deleteAll() {
-        users.deleteAll();
+    private void friendshipChanged(Long userId, Long friendId) {
+        versions.bump(userId);
+        versions.bump(friendId);
+        friendListVersions.bump(userId);
+        friendListVersions.bump(friendId);
     }
 
-    public void clearCredentialsSets() {
-        emailSet.clear();
-        loginSet.clear();
+    public void deleteAll() {
+        users.deleteAll();
+        versions.bumpAll();
+        friendListVersions.bumpAll();
     }
 }
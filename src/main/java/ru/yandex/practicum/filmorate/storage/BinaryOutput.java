@@ -0,0 +1,77 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+// Запись примитивов в двоичном формате снимков и журнала. Наследник решает, что делать
+// с заполненным буфером: сбросить в файл или увеличить
+abstract class BinaryOutput {
+    static final long NULL_LONG = Long.MIN_VALUE;
+
+    protected abstract ByteBuffer ensure(int bytes);
+
+    void put(byte value) {
+        ensure(Byte.BYTES).put(value);
+    }
+
+    void putInt(int value) {
+        ensure(Integer.BYTES).putInt(value);
+    }
+
+    void putLong(long value) {
+        ensure(Long.BYTES).putLong(value);
+    }
+
+    void putDate(LocalDate date) {
+        putLong(date == null ? NULL_LONG : date.toEpochDay());
+    }
+
+    void putString(String value) {
+        if (value == null) {
+            putInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        putInt(bytes.length);
+        for (int from = 0; from < bytes.length; ) {
+            ByteBuffer buffer = ensure(1);
+            int chunk = Math.min(bytes.length - from, buffer.remaining());
+            buffer.put(bytes, from, chunk);
+            from += chunk;
+        }
+    }
+
+    void putLongs(long[] values) {
+        putInt(values.length);
+        for (int from = 0; from < values.length; ) {
+            ByteBuffer buffer = ensure(Long.BYTES);
+            int chunk = Math.min(values.length - from, buffer.remaining() / Long.BYTES);
+            buffer.asLongBuffer().put(values, from, chunk);
+            buffer.position(buffer.position() + chunk * Long.BYTES);
+            from += chunk;
+        }
+    }
+
+    static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static LocalDate getDate(ByteBuffer buffer) {
+        long epochDay = buffer.getLong();
+        return epochDay == NULL_LONG ? null : LocalDate.ofEpochDay(epochDay);
+    }
+
+    static long[] getLongs(ByteBuffer buffer) {
+        long[] values = new long[buffer.getInt()];
+        buffer.asLongBuffer().get(values);
+        buffer.position(buffer.position() + values.length * Long.BYTES);
+        return values;
+    }
+}
@@ -0,0 +1,103 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmFilter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+public class CachingFilmStorage implements FilmStorage {
+    private final FilmStorage films;
+    private final StorageCache<Film> cache;
+
+    public CachingFilmStorage(FilmStorage films, Cache<Long, Film> cache) {
+        this.films = films;
+        this.cache = new StorageCache<>(cache);
+    }
+
+    @Override
+    public List<Film> findAll() {
+        return films.findAll();
+    }
+
+    @Override
+    public List<Film> findPage(Long afterId, int limit) {
+        return films.findPage(afterId, limit);
+    }
+
+    @Override
+    public void forEach(Consumer<Film> action) {
+        films.forEach(action);
+    }
+
+    @Override
+    public Film create(Film film) {
+        long epoch = cache.epoch();
+        Film created = films.create(film);
+        cache.putCreated(created.getId(), created, epoch);
+        return created;
+    }
+
+    @Override
+    public List<Film> createAll(List<Film> createdFilms) {
+        return films.createAll(createdFilms);
+    }
+
+    @Override
+    public Film update(Film updatingFilm) {
+        Film updated = films.update(updatingFilm);
+        cache.invalidate(updated.getId());
+        return updated;
+    }
+
+    @Override
+    public Optional<Film> findById(Long id) {
+        return cache.get(id, films::findById);
+    }
+
+    @Override
+    public List<Film> findAllById(long[] ids) {
+        Map<Long, Film> found = cache.getAll(ids, films::findAllById, Film::getId);
+        List<Film> result = new ArrayList<>(found.size());
+        for (long id : ids) {
+            Film film = found.get(id);
+            if (film != null) {
+                result.add(film);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public long[] search(String query, int limit) {
+        return films.search(query, limit);
+    }
+
+    @Override
+    public long[] findIds(FilmFilter filter, int limit) {
+        return films.findIds(filter, limit);
+    }
+
+    @Override
+    public long count() {
+        return films.count();
+    }
+
+    @Override
+    public void deleteAll() {
+        films.deleteAll();
+        cache.invalidateAll();
+    }
+
+    public void invalidate(Long id) {
+        cache.invalidate(id);
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+}
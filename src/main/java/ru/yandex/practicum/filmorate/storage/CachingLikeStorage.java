@@ -0,0 +1,76 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.RequiredArgsConstructor;
+import ru.yandex.practicum.filmorate.model.FilmLike;
+import ru.yandex.practicum.filmorate.model.FilmLikes;
+
+import java.util.List;
+
+// Лайки входят в представление фильма, поэтому любое их изменение сбрасывает фильм из кэша
+@RequiredArgsConstructor
+public class CachingLikeStorage implements LikeStorage {
+    private final LikeStorage likes;
+    private final CachingFilmStorage films;
+
+    @Override
+    public FilmLikes likesOf(Long filmId) {
+        return likes.likesOf(filmId);
+    }
+
+    @Override
+    public LikeChange addLike(Long filmId, Long userId) {
+        try {
+            return likes.addLike(filmId, userId);
+        } finally {
+            films.invalidate(filmId);
+        }
+    }
+
+    @Override
+    public LikeChange removeLike(Long filmId, Long userId) {
+        try {
+            return likes.removeLike(filmId, userId);
+        } finally {
+            films.invalidate(filmId);
+        }
+    }
+
+    @Override
+    public boolean[] addLikes(List<FilmLike> batch) {
+        try {
+            return likes.addLikes(batch);
+        } finally {
+            batch.forEach(like -> films.invalidate(like.getFilmId()));
+        }
+    }
+
+    @Override
+    public boolean[] removeLikes(List<FilmLike> batch) {
+        try {
+            return likes.removeLikes(batch);
+        } finally {
+            batch.forEach(like -> films.invalidate(like.getFilmId()));
+        }
+    }
+
+    @Override
+    public List<Long> findPopularFilmIds(int count) {
+        return likes.findPopularFilmIds(count);
+    }
+
+    @Override
+    public long[] findLikedFilmIds(Long userId) {
+        return likes.findLikedFilmIds(userId);
+    }
+
+    @Override
+    public long[] findFilmRecommendations(Long userId, int limit) {
+        return likes.findFilmRecommendations(userId, limit);
+    }
+
+    @Override
+    public void deleteAll() {
+        likes.deleteAll();
+        films.invalidateAll();
+    }
+}
@@ -0,0 +1,146 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+public class CachingUserStorage implements UserStorage {
+    private final UserStorage users;
+    private final StorageCache<User> cache;
+
+    public CachingUserStorage(UserStorage users, Cache<Long, User> cache) {
+        this.users = users;
+        this.cache = new StorageCache<>(cache);
+    }
+
+    @Override
+    public List<User> findAll() {
+        return users.findAll();
+    }
+
+    @Override
+    public List<User> findPage(Long afterId, int limit) {
+        return users.findPage(afterId, limit);
+    }
+
+    @Override
+    public void forEach(Consumer<User> action) {
+        users.forEach(action);
+    }
+
+    @Override
+    public void reserveCredentials(String email, String login) {
+        users.reserveCredentials(email, login);
+    }
+
+    @Override
+    public void releaseCredentials(String email, String login) {
+        users.releaseCredentials(email, login);
+    }
+
+    @Override
+    public User create(User user) {
+        long epoch = cache.epoch();
+        User created = users.create(user);
+        cache.putCreated(created.getId(), created, epoch);
+        return created;
+    }
+
+    @Override
+    public List<User> createAll(List<User> createdUsers) {
+        return users.createAll(createdUsers);
+    }
+
+    @Override
+    public User update(User user) {
+        User updated = users.update(user);
+        cache.invalidate(updated.getId());
+        return updated;
+    }
+
+    @Override
+    public Optional<User> findById(Long id) {
+        return cache.get(id, users::findById);
+    }
+
+    @Override
+    public List<User> findAllById(long[] ids) {
+        // отсутствующие в кэше пользователи догружаются из хранилища одним пакетным запросом
+        Map<Long, User> found = cache.getAll(ids, users::findAllById, User::getId);
+        List<User> result = new ArrayList<>(found.size());
+        for (long id : ids) {
+            User user = found.get(id);
+            if (user != null) {
+                result.add(user);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public long[] findFriendRecommendations(Long userId, int limit) {
+        return users.findFriendRecommendations(userId, limit);
+    }
+
+    @Override
+    public boolean addFriend(Long userId, Long friendId) {
+        try {
+            return users.addFriend(userId, friendId);
+        } finally {
+            cache.invalidate(userId);
+            cache.invalidate(friendId);
+        }
+    }
+
+    @Override
+    public boolean removeFriend(Long userId, Long friendId) {
+        try {
+            return users.removeFriend(userId, friendId);
+        } finally {
+            cache.invalidate(userId);
+            cache.invalidate(friendId);
+        }
+    }
+
+    @Override
+    public boolean[] addFriends(List<Friendship> friendships) {
+        try {
+            return users.addFriends(friendships);
+        } finally {
+            invalidateUsers(friendships);
+        }
+    }
+
+    @Override
+    public boolean[] removeFriends(List<Friendship> friendships) {
+        try {
+            return users.removeFriends(friendships);
+        } finally {
+            invalidateUsers(friendships);
+        }
+    }
+
+    @Override
+    public long count() {
+        return users.count();
+    }
+
+    @Override
+    public void deleteAll() {
+        users.deleteAll();
+        cache.invalidateAll();
+    }
+
+    private void invalidateUsers(List<Friendship> friendships) {
+        friendships.forEach(friendship -> {
+            cache.invalidate(friendship.getUserId());
+            cache.invalidate(friendship.getFriendId());
+        });
+    }
+}
@@ -0,0 +1,51 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.nio.ByteBuffer;
+
+// Общая раскладка полей фильма и пользователя для снимков и журнала. Лайки и друзья сюда не входят:
+// снимок пишет их следом, а журнал хранит их изменения отдельными записями
+final class EntityCodec {
+
+    private EntityCodec() {
+    }
+
+    static void writeUser(BinaryOutput out, User user) {
+        out.putLong(user.getId());
+        out.putString(user.getEmail());
+        out.putString(user.getLogin());
+        out.putString(user.getName());
+        out.putDate(user.getBirthday());
+    }
+
+    static User readUser(ByteBuffer buffer) {
+        User user = new User();
+        user.setId(buffer.getLong());
+        user.setEmail(BinaryOutput.getString(buffer));
+        user.setLogin(BinaryOutput.getString(buffer));
+        user.setName(BinaryOutput.getString(buffer));
+        user.setBirthday(BinaryOutput.getDate(buffer));
+        return user;
+    }
+
+    static void writeFilm(BinaryOutput out, Film film) {
+        out.putLong(film.getId());
+        out.putString(film.getName());
+        out.putString(film.getDescription());
+        out.putDate(film.getReleaseDate());
+        out.putLong(film.getDuration() == null ? BinaryOutput.NULL_LONG : film.getDuration());
+    }
+
+    static Film readFilm(ByteBuffer buffer) {
+        Film film = new Film();
+        film.setId(buffer.getLong());
+        film.setName(BinaryOutput.getString(buffer));
+        film.setDescription(BinaryOutput.getString(buffer));
+        film.setReleaseDate(BinaryOutput.getDate(buffer));
+        long duration = buffer.getLong();
+        film.setDuration(duration == BinaryOutput.NULL_LONG ? null : duration);
+        return film;
+    }
+}
@@ -0,0 +1,512 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+// Журнал упреждающей записи для in-memory хранилищ. Файл журнала делится на сегменты:
+// снимок начинается с переключения на новый сегмент, а после записи снимка старые сегменты удаляются.
+// Запись в очередь идёт под короткой блокировкой, на диск очередь сбрасывает один поток пачками
+// (групповая фиксация), так что одна операция fsync подтверждает сразу все накопившиеся изменения.
+// Формат записи: длина содержимого, тип, содержимое, CRC32C типа и содержимого
+@Slf4j
+@Component
+@Profile("!db")
+@ConditionalOnProperty(name = {"filmorate.snapshot.enabled", "filmorate.journal.enabled"}, havingValue = "true")
+@RequiredArgsConstructor
+public class FileStorageJournal implements StorageJournal {
+    private static final byte FILM = 1;
+    private static final byte USER = 2;
+    private static final byte LIKE_ADDED = 3;
+    private static final byte LIKE_REMOVED = 4;
+    private static final byte FRIEND_ADDED = 5;
+    private static final byte FRIEND_REMOVED = 6;
+    private static final byte FILMS_CLEARED = 7;
+    private static final byte USERS_CLEARED = 8;
+    private static final byte LIKES_CLEARED = 9;
+    private static final int RECORD_OVERHEAD = Integer.BYTES + Byte.BYTES + Integer.BYTES;
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    public enum FsyncPolicy {
+        // каждая операция ждёт fsync своей пачки
+        ALWAYS,
+        // fsync не чаще раза в fsync-interval, операции не ждут диска
+        INTERVAL,
+        // сброс на диск остаётся на усмотрение ОС
+        NEVER
+    }
+
+    // Обработчик записей при восстановлении
+    public interface Replay {
+        void film(Film film);
+
+        void user(User user);
+
+        void like(long filmId, long userId, boolean added);
+
+        void friendship(long userId, long friendId, boolean added);
+
+        void clearFilms();
+
+        void clearUsers();
+
+        void clearLikes();
+    }
+
+    @Value("${filmorate.journal.directory:./data/journal}")
+    private final Path directory;
+    @Value("${filmorate.journal.fsync:interval}")
+    private final FsyncPolicy fsync;
+    @Value("${filmorate.journal.fsync-interval:PT0.05S}")
+    private final Duration fsyncInterval;
+    @Value("${filmorate.journal.compact-threshold:64MB}")
+    private final DataSize compactThreshold;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    // вставки держат общую блокировку от записи в журнал до публикации в хранилище, rotate - исключительную
+    private final ReentrantReadWriteLock publishGate = new ReentrantReadWriteLock();
+    private final Condition hasWork = lock.newCondition();
+    private final Condition processed = lock.newCondition();
+    private List<Entry> pending = new ArrayList<>();
+    private long lastSequence;
+    private long lastSegment;
+    private long processedSequence;
+    private boolean closed;
+    private IOException failure;
+    private Thread writer;
+
+    // состояние потока записи
+    private long segment;
+    private FileChannel channel;
+    private boolean dirty;
+    private long lastForce;
+    private volatile long uncompactedBytes;
+
+    @Override
+    public long putFilm(Film film) {
+        return append(FILM, out -> EntityCodec.writeFilm(out, film));
+    }
+
+    @Override
+    public long putUser(User user) {
+        return append(USER, out -> EntityCodec.writeUser(out, user));
+    }
+
+    @Override
+    public long like(long filmId, long userId, boolean added) {
+        return append(added ? LIKE_ADDED : LIKE_REMOVED, out -> {
+            out.putLong(filmId);
+            out.putLong(userId);
+        });
+    }
+
+    @Override
+    public long friendship(long userId, long friendId, boolean added) {
+        return append(added ? FRIEND_ADDED : FRIEND_REMOVED, out -> {
+            out.putLong(userId);
+            out.putLong(friendId);
+        });
+    }
+
+    @Override
+    public long clearFilms() {
+        return append(FILMS_CLEARED, out -> { });
+    }
+
+    @Override
+    public long clearUsers() {
+        return append(USERS_CLEARED, out -> { });
+    }
+
+    @Override
+    public long clearLikes() {
+        return append(LIKES_CLEARED, out -> { });
+    }
+
+    @Override
+    public long appendAndPublish(LongSupplier append, Runnable publish) {
+        publishGate.readLock().lock();
+        try {
+            return StorageJournal.super.appendAndPublish(append, publish);
+        } finally {
+            publishGate.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void awaitDurable(long sequence) {
+        if (fsync == FsyncPolicy.ALWAYS) {
+            awaitProcessed(sequence);
+        }
+    }
+
+    // Применяет все сегменты начиная с fromSegment. Оборванная при сбое запись в конце последнего
+    // сегмента отбрасывается, повреждение в середине журнала останавливает запуск
+    public void replay(long fromSegment, Replay replay) {
+        List<Long> segments = listSegments().stream().filter(id -> id >= fromSegment).toList();
+        long records = 0;
+        long bytes = 0;
+        for (int i = 0; i < segments.size(); i++) {
+            Path file = segmentPath(segments.get(i));
+            boolean last = i == segments.size() - 1;
+            try (FileChannel replayed = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                long size = replayed.size();
+                if (size > Integer.MAX_VALUE) {
+                    throw new IllegalStateException("Слишком большой сегмент журнала " + file);
+                }
+                MappedByteBuffer buffer = replayed.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                int valid = 0;
+                while (valid < size) {
+                    ByteBuffer record = readRecord(buffer, valid);
+                    if (record == null) {
+                        break;
+                    }
+                    apply(record, replay);
+                    valid = buffer.position();
+                    records++;
+                }
+                if (valid < size) {
+                    if (!last) {
+                        throw new IllegalStateException("Повреждён сегмент журнала " + file + " на позиции " + valid);
+                    }
+                    log.warn("Отброшен оборванный хвост журнала {}: {} байт", file, size - valid);
+                    replayed.truncate(valid);
+                }
+                bytes += valid;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Не удалось прочитать журнал " + file, e);
+            }
+        }
+        uncompactedBytes = bytes;
+        segment = Math.max(fromSegment, segments.isEmpty() ? 0 : segments.getLast() + 1);
+        log.info("Из журнала применено изменений: {}, сегментов: {}", records, segments.size());
+    }
+
+    // Новые записи всегда идут в новый сегмент, чтобы не дописывать в файл с возможным оборванным хвостом
+    public void open() {
+        try {
+            Files.createDirectories(directory);
+            channel = openSegment(segment);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось открыть журнал в " + directory, e);
+        }
+        lastForce = System.nanoTime();
+        lastSegment = segment;
+        writer = Thread.ofPlatform().name("storage-journal").daemon().start(this::runWriter);
+        log.info("Журнал изменений открыт: {}, политика fsync: {}", segmentPath(segment), fsync);
+    }
+
+    // Переключает запись на новый сегмент и возвращает его номер. Всё, что записано в журнал раньше,
+    // уже применено к хранилищам и попадёт в снимок, начатый после переключения: изменения применяются
+    // до записи в журнал, а вставки, записанные, но ещё не опубликованные, переключение дожидается.
+    // Иначе снимок мог бы не застать новую сущность, а её единственная запись ушла бы в удаляемый сегмент
+    public long rotate() {
+        long target;
+        long sequence;
+        publishGate.writeLock().lock();
+        lock.lock();
+        try {
+            checkWritable();
+            target = ++lastSegment;
+            sequence = ++lastSequence;
+            pending.add(new Entry(sequence, null, target));
+            hasWork.signal();
+        } finally {
+            lock.unlock();
+            publishGate.writeLock().unlock();
+        }
+        awaitProcessed(sequence);
+        return target;
+    }
+
+    public void deleteBefore(long keptSegment) {
+        for (long id : listSegments()) {
+            if (id < keptSegment) {
+                try {
+                    Files.deleteIfExists(segmentPath(id));
+                } catch (IOException e) {
+                    log.warn("Не удалось удалить сегмент журнала {}", segmentPath(id), e);
+                }
+            }
+        }
+    }
+
+    public boolean needsCompaction() {
+        return uncompactedBytes > compactThreshold.toBytes();
+    }
+
+    @PreDestroy
+    public void close() throws InterruptedException {
+        lock.lock();
+        try {
+            closed = true;
+            hasWork.signal();
+        } finally {
+            lock.unlock();
+        }
+        if (writer != null) {
+            writer.join();
+        }
+    }
+
+    private long append(byte type, Consumer<BinaryOutput> payload) {
+        RecordOutput out = new RecordOutput();
+        payload.accept(out);
+        byte[] record = out.toRecord(type);
+        lock.lock();
+        try {
+            checkWritable();
+            long sequence = ++lastSequence;
+            pending.add(new Entry(sequence, record, -1));
+            hasWork.signal();
+            return sequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void awaitProcessed(long sequence) {
+        lock.lock();
+        try {
+            while (processedSequence < sequence) {
+                checkWritable();
+                processed.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void checkWritable() {
+        if (failure != null) {
+            throw new IllegalStateException("Журнал изменений недоступен", failure);
+        }
+        if (closed || writer == null) {
+            throw new IllegalStateException("Журнал изменений закрыт");
+        }
+    }
+
+    private void runWriter() {
+        try {
+            List<Entry> batch;
+            while ((batch = takeBatch()) != null) {
+                write(batch);
+                long now = System.nanoTime();
+                if (dirty && (fsync == FsyncPolicy.ALWAYS
+                        || fsync == FsyncPolicy.INTERVAL && now - lastForce >= fsyncInterval.toNanos())) {
+                    force();
+                }
+                if (!batch.isEmpty()) {
+                    markProcessed(batch.getLast().sequence(), null);
+                }
+            }
+            if (fsync != FsyncPolicy.NEVER) {
+                force();
+            }
+            channel.close();
+        } catch (IOException e) {
+            log.error("Ошибка записи журнала изменений, дальнейшие изменения хранилищ будут отклоняться", e);
+            markProcessed(processedSequence, e);
+        }
+    }
+
+    // Пустая пачка означает, что пора сбросить на диск накопленное при политике INTERVAL
+    private List<Entry> takeBatch() {
+        lock.lock();
+        try {
+            while (pending.isEmpty()) {
+                if (closed) {
+                    return null;
+                }
+                if (dirty && fsync == FsyncPolicy.INTERVAL) {
+                    long wait = fsyncInterval.toNanos() - (System.nanoTime() - lastForce);
+                    if (wait <= 0) {
+                        return List.of();
+                    }
+                    hasWork.awaitNanos(wait);
+                } else {
+                    hasWork.awaitUninterruptibly();
+                }
+            }
+            List<Entry> batch = pending;
+            pending = new ArrayList<>();
+            return batch;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void write(List<Entry> batch) throws IOException {
+        List<ByteBuffer> buffers = new ArrayList<>(batch.size());
+        for (Entry entry : batch) {
+            if (entry.isRotation()) {
+                writeFully(buffers);
+                force();
+                channel.close();
+                segment = entry.rotateTo();
+                channel = openSegment(segment);
+                uncompactedBytes = 0;
+            } else {
+                buffers.add(ByteBuffer.wrap(entry.record()));
+            }
+        }
+        writeFully(buffers);
+    }
+
+    private void writeFully(List<ByteBuffer> buffers) throws IOException {
+        if (buffers.isEmpty()) {
+            return;
+        }
+        ByteBuffer[] gathered = buffers.toArray(ByteBuffer[]::new);
+        long written = 0;
+        while (gathered[gathered.length - 1].hasRemaining()) {
+            written += channel.write(gathered);
+        }
+        uncompactedBytes += written;
+        dirty = true;
+        buffers.clear();
+    }
+
+    private void force() throws IOException {
+        if (dirty) {
+            channel.force(false);
+            dirty = false;
+        }
+        lastForce = System.nanoTime();
+    }
+
+    private void markProcessed(long sequence, IOException error) {
+        lock.lock();
+        try {
+            processedSequence = Math.max(processedSequence, sequence);
+            if (error != null) {
+                failure = error;
+            }
+            processed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private FileChannel openSegment(long id) throws IOException {
+        return FileChannel.open(segmentPath(id), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+
+    private Path segmentPath(long id) {
+        return directory.resolve(SEGMENT_PREFIX + String.format("%020d", id) + SEGMENT_SUFFIX);
+    }
+
+    private List<Long> listSegments() {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())))
+                    .sorted()
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось прочитать каталог журнала " + directory, e);
+        }
+    }
+
+    // Возвращает содержимое записи (тип и данные) или null, если запись оборвана или повреждена
+    private static ByteBuffer readRecord(ByteBuffer buffer, int position) {
+        buffer.position(position);
+        if (buffer.remaining() < RECORD_OVERHEAD) {
+            return null;
+        }
+        int length = buffer.getInt();
+        if (length < 0 || buffer.remaining() < length + Byte.BYTES + Integer.BYTES) {
+            return null;
+        }
+        ByteBuffer body = buffer.slice(buffer.position(), length + Byte.BYTES);
+        CRC32C crc = new CRC32C();
+        crc.update(body.duplicate());
+        buffer.position(buffer.position() + length + Byte.BYTES);
+        if ((int) crc.getValue() != buffer.getInt()) {
+            return null;
+        }
+        return body;
+    }
+
+    private static void apply(ByteBuffer record, Replay replay) {
+        byte type = record.get();
+        switch (type) {
+            case FILM -> replay.film(EntityCodec.readFilm(record));
+            case USER -> replay.user(EntityCodec.readUser(record));
+            case LIKE_ADDED, LIKE_REMOVED -> replay.like(record.getLong(), record.getLong(), type == LIKE_ADDED);
+            case FRIEND_ADDED, FRIEND_REMOVED -> replay.friendship(record.getLong(), record.getLong(), type == FRIEND_ADDED);
+            case FILMS_CLEARED -> replay.clearFilms();
+            case USERS_CLEARED -> replay.clearUsers();
+            case LIKES_CLEARED -> replay.clearLikes();
+            default -> throw new IllegalStateException("Неизвестный тип записи журнала: " + type);
+        }
+    }
+
+    private record Entry(long sequence, byte[] record, long rotateTo) {
+        boolean isRotation() {
+            return record == null;
+        }
+    }
+
+    // Запись собирается в растущем буфере, с местом под длину в начале
+    private static final class RecordOutput extends BinaryOutput {
+        private ByteBuffer buffer = ByteBuffer.allocate(128).position(Integer.BYTES + Byte.BYTES);
+
+        @Override
+        protected ByteBuffer ensure(int bytes) {
+            if (buffer.remaining() < bytes) {
+                ByteBuffer grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes + Integer.BYTES));
+                buffer.flip();
+                grown.put(buffer);
+                buffer = grown;
+            }
+            return buffer;
+        }
+
+        byte[] toRecord(byte type) {
+            int length = buffer.position() - Integer.BYTES - Byte.BYTES;
+            ensure(Integer.BYTES);
+            buffer.putInt(0, length);
+            buffer.put(Integer.BYTES, type);
+            CRC32C crc = new CRC32C();
+            crc.update(buffer.array(), Integer.BYTES, length + Byte.BYTES);
+            buffer.putInt((int) crc.getValue());
+            return Arrays.copyOf(buffer.array(), buffer.position());
+        }
+    }
+}
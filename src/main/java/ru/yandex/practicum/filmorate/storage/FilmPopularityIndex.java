@@ -0,0 +1,63 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.IntSupplier;
+
+// Рейтинг фильмов по числу лайков, который обновляется точечно при каждом изменении лайков,
+// вместо сортировки всего каталога на каждый запрос популярных фильмов.
+public class FilmPopularityIndex {
+    private static final Comparator<Entry> BY_LIKES_DESC = Comparator.comparingInt(Entry::likes).reversed()
+            .thenComparingLong(Entry::filmId);
+
+    private final ConcurrentSkipListSet<Entry> ranking = new ConcurrentSkipListSet<>(BY_LIKES_DESC);
+    private final Map<Long, Integer> likesByFilm = new ConcurrentHashMap<>();
+
+    public void update(long filmId, IntSupplier currentLikes) {
+        // compute сериализует изменения одного фильма, а число лайков читается уже внутри него,
+        // поэтому последнее обновление всегда видит итоговое значение счётчика.
+        // Новая позиция добавляется раньше удаления старой, и параллельный обход рейтинга не теряет фильм
+        likesByFilm.compute(filmId, (id, oldLikes) -> {
+            int likes = currentLikes.getAsInt();
+            ranking.add(new Entry(likes, id));
+            if (oldLikes != null && oldLikes != likes) {
+                ranking.remove(new Entry(oldLikes, id));
+            }
+            return likes;
+        });
+    }
+
+    public void remove(long filmId) {
+        likesByFilm.computeIfPresent(filmId, (id, oldLikes) -> {
+            ranking.remove(new Entry(oldLikes, id));
+            return null;
+        });
+    }
+
+    public void clear() {
+        likesByFilm.clear();
+        ranking.clear();
+    }
+
+    public List<Long> top(int count) {
+        List<Long> filmIds = new ArrayList<>(Math.min(count, likesByFilm.size()));
+        for (Entry entry : ranking) {
+            if (filmIds.size() == count) {
+                break;
+            }
+            // устаревшая позиция фильма, которую ещё не успели удалить
+            Integer currentLikes = likesByFilm.get(entry.filmId());
+            if (currentLikes != null && currentLikes == entry.likes()) {
+                filmIds.add(entry.filmId());
+            }
+        }
+        return filmIds;
+    }
+
+    private record Entry(int likes, long filmId) {
+    }
+}
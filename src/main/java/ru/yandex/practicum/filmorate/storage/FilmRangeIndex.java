@@ -0,0 +1,50 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.LongPredicate;
+
+// Вторичный индекс фильмов по числовому полю (дата выхода в днях, продолжительность): пары (значение, ID)
+// упорядочены в ConcurrentSkipListSet, поэтому выборка диапазона стоит O(log n + k) вместо обхода каталога.
+// Фильмы без значения поля в индекс не попадают
+public class FilmRangeIndex {
+    private static final Comparator<Entry> BY_KEY = Comparator.comparingLong(Entry::key).thenComparingLong(Entry::filmId);
+
+    private final ConcurrentSkipListSet<Entry> entries = new ConcurrentSkipListSet<>(BY_KEY);
+    private final Map<Long, Long> keyByFilm = new ConcurrentHashMap<>();
+
+    public void update(long filmId, Long key) {
+        // как и в FilmPopularityIndex, compute сериализует изменения одного фильма,
+        // а новая позиция добавляется раньше удаления старой, и параллельный обход не теряет фильм
+        keyByFilm.compute(filmId, (id, oldKey) -> {
+            if (key != null) {
+                entries.add(new Entry(key, id));
+            }
+            if (oldKey != null && !oldKey.equals(key)) {
+                entries.remove(new Entry(oldKey, id));
+            }
+            return key;
+        });
+    }
+
+    public void clear() {
+        keyByFilm.clear();
+        entries.clear();
+    }
+
+    // Обходит ID фильмов со значением в [from, to] по возрастанию значения; false из visitor прекращает обход
+    public void forEachInRange(long from, long to, LongPredicate visitor) {
+        for (Entry entry : entries.subSet(new Entry(from, Long.MIN_VALUE), true, new Entry(to, Long.MAX_VALUE), true)) {
+            // устаревшая позиция фильма, которую ещё не успели удалить
+            Long currentKey = keyByFilm.get(entry.filmId());
+            if (currentKey != null && currentKey == entry.key() && !visitor.test(entry.filmId())) {
+                return;
+            }
+        }
+    }
+
+    private record Entry(long key, long filmId) {
+    }
+}
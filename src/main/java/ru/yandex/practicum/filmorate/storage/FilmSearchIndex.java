@@ -0,0 +1,307 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.util.LongCounter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Полнотекстовый индекс по названию и описанию фильмов: слово -> отсортированный список ID фильмов.
+// Слова упорядочены в ConcurrentSkipListMap, поэтому поиск по префиксу — это диапазон карты.
+// Найденный фильм должен содержать все слова запроса; релевантность складывается из весов слов запроса,
+// а вес слова — лучшее из его совпадений: точное слово в названии весит больше префикса, название — больше описания.
+// Правило совпадения (слово текста начинается со слова запроса) и веса те же, что у поиска в JdbcFilmStorage
+public class FilmSearchIndex {
+    private static final int NAME_EXACT = 4;
+    private static final int NAME_PREFIX = 3;
+    private static final int DESCRIPTION_EXACT = 2;
+    private static final int DESCRIPTION_PREFIX = 1;
+    private static final String[] NO_TERMS = new String[0];
+
+    private final ConcurrentSkipListMap<String, Postings> nameTerms = new ConcurrentSkipListMap<>();
+    private final ConcurrentSkipListMap<String, Postings> descriptionTerms = new ConcurrentSkipListMap<>();
+    // слова, под которыми фильм сейчас проиндексирован: при обновлении из индекса убирается только разница
+    private final Map<Long, FilmTerms> termsByFilm = new ConcurrentHashMap<>();
+    private final StripedLock locks = new StripedLock(64);
+
+    // Разбор идёт под блокировкой фильма: иначе при параллельных обновлениях в индексе могли бы остаться
+    // слова более ранней версии, разобранной позже
+    public void index(Film film) {
+        long filmId = film.getId();
+        locks.withLock(filmId, () -> {
+            FilmTerms terms = new FilmTerms(tokenize(film.getName()), tokenize(film.getDescription()));
+            FilmTerms previous = termsByFilm.put(filmId, terms);
+            reindex(nameTerms, filmId, previous == null ? NO_TERMS : previous.name(), terms.name());
+            reindex(descriptionTerms, filmId, previous == null ? NO_TERMS : previous.description(), terms.description());
+            return null;
+        });
+    }
+
+    public void clear() {
+        termsByFilm.clear();
+        nameTerms.clear();
+        descriptionTerms.clear();
+    }
+
+    // Слова запроса обрабатываются от самого редкого: его совпадения дают кандидатов в порядке возрастания ID,
+    // а остальные слова проверяются у кандидатов бинарным поиском, без обхода длинных списков.
+    // При равной релевантности выше фильм с меньшим ID, поэтому, как только limit кандидатов набрали
+    // наибольшую возможную оценку, остальные можно не смотреть: частое слово не обходит весь каталог
+    public long[] search(String query, int limit) {
+        String[] tokens = tokenize(query);
+        if (tokens.length == 0) {
+            return new long[0];
+        }
+        List<TokenMatch> matches = new ArrayList<>(tokens.length);
+        for (String token : tokens) {
+            TokenMatch match = new TokenMatch();
+            expand(nameTerms, token, NAME_EXACT, NAME_PREFIX, match);
+            expand(descriptionTerms, token, DESCRIPTION_EXACT, DESCRIPTION_PREFIX, match);
+            if (match.postings.isEmpty()) {
+                return new long[0];
+            }
+            matches.add(match);
+        }
+        matches.sort(Comparator.comparingLong(TokenMatch::estimatedSize));
+        TokenMatch rarest = matches.getFirst();
+        List<TokenMatch> others = matches.subList(1, matches.size());
+        int bestScore = matches.stream().mapToInt(TokenMatch::maxWeight).sum();
+
+        LongCounter scores = new LongCounter((int) Math.min(rarest.estimatedSize(), 1024));
+        int[] bestFound = new int[1];
+        rarest.forEachInOrder((filmId, weight) -> {
+            int score = weight;
+            for (TokenMatch other : others) {
+                int otherWeight = other.weightOf(filmId);
+                if (otherWeight == 0) {
+                    return true;
+                }
+                score += otherWeight;
+            }
+            scores.add(filmId, score);
+            return score < bestScore || ++bestFound[0] < limit;
+        });
+        return scores.top(limit, filmId -> false);
+    }
+
+    // Слова в нижнем регистре без повторов; разделитель — всё, что не буква и не цифра,
+    // поэтому кириллица и латиница разбираются одинаково, а «ё» приравнивается к «е»
+    static String[] tokenize(String text) {
+        if (text == null || text.isEmpty()) {
+            return NO_TERMS;
+        }
+        TreeSet<String> terms = new TreeSet<>();
+        StringBuilder term = new StringBuilder();
+        text.toLowerCase(Locale.ROOT).codePoints().forEach(codePoint -> {
+            if (Character.isLetterOrDigit(codePoint)) {
+                term.appendCodePoint(codePoint == 'ё' ? 'е' : codePoint);
+            } else if (!term.isEmpty()) {
+                terms.add(term.toString());
+                term.setLength(0);
+            }
+        });
+        if (!term.isEmpty()) {
+            terms.add(term.toString());
+        }
+        return terms.toArray(NO_TERMS);
+    }
+
+    // Опустевший список удаляется из словаря, чтобы префиксы запроса не разворачивались в забытые слова.
+    // Удалённый список закрывается для записи: фильм, попавший в него в это время
+    // из другого потока, добавляется заново в новый список
+    private void reindex(ConcurrentSkipListMap<String, Postings> index, long filmId, String[] previous, String[] current) {
+        for (String term : previous) {
+            if (Arrays.binarySearch(current, term) < 0) {
+                Postings postings = index.get(term);
+                if (postings != null && postings.remove(filmId)) {
+                    index.remove(term, postings);
+                }
+            }
+        }
+        for (String term : current) {
+            if (Arrays.binarySearch(previous, term) < 0) {
+                while (true) {
+                    Postings postings = index.computeIfAbsent(term, key -> new Postings());
+                    if (postings.add(filmId)) {
+                        break;
+                    }
+                    index.remove(term, postings);
+                }
+            }
+        }
+    }
+
+    // Префикс разворачивается во все слова словаря, как и в поиске JdbcFilmStorage: обрезка списка слов
+    // теряла бы фильмы. Объём работы ограничивает не число слов, а ранняя остановка обхода в search.
+    // Точное слово — первое в диапазоне, поэтому списки идут по невозрастанию веса: сначала название, потом описание
+    private void expand(ConcurrentSkipListMap<String, Postings> index, String token, int exactWeight, int prefixWeight,
+                        TokenMatch match) {
+        NavigableMap<String, Postings> range = index.subMap(token, true, token + Character.MAX_VALUE, false);
+        for (Map.Entry<String, Postings> entry : range.entrySet()) {
+            match.add(entry.getValue(), entry.getKey().equals(token) ? exactWeight : prefixWeight);
+        }
+    }
+
+    private record FilmTerms(String[] name, String[] description) {
+    }
+
+    // списки ID, в которых встречаются слова, выросшие из одного слова запроса, и их веса;
+    // фильм получает наибольший из весов списков, в которых он есть
+    private static final class TokenMatch {
+        private final List<Postings> postings = new ArrayList<>();
+        private final List<Integer> weights = new ArrayList<>();
+
+        void add(Postings list, int weight) {
+            postings.add(list);
+            weights.add(weight);
+        }
+
+        long estimatedSize() {
+            long size = 0;
+            for (Postings list : postings) {
+                size += list.size();
+            }
+            return size;
+        }
+
+        int maxWeight() {
+            return weights.stream().mapToInt(Integer::intValue).max().orElse(0);
+        }
+
+        // Слияние списков: ID выдаются по возрастанию с наибольшим весом списков, где они встречаются.
+        // Короткий префикс может развернуться в тысячи слов, поэтому курсоры списков лежат в куче по текущему ID:
+        // каждый выданный ID стоит логарифм от числа списков, а не их полный проход
+        void forEachInOrder(ScoredVisitor visitor) {
+            Postings.Snapshot[] lists = new Postings.Snapshot[postings.size()];
+            for (int i = 0; i < lists.length; i++) {
+                lists[i] = postings.get(i).snapshot;
+            }
+            int[] positions = new int[lists.length];
+            PriorityQueue<Integer> cursors = new PriorityQueue<>(Math.max(1, lists.length),
+                    Comparator.comparingLong(i -> lists[i].ids()[positions[i]]));
+            for (int i = 0; i < lists.length; i++) {
+                if (lists[i].size() > 0) {
+                    cursors.add(i);
+                }
+            }
+            while (!cursors.isEmpty()) {
+                int head = cursors.peek();
+                long next = lists[head].ids()[positions[head]];
+                int weight = 0;
+                while (!cursors.isEmpty() && lists[cursors.peek()].ids()[positions[cursors.peek()]] == next) {
+                    int list = cursors.poll();
+                    weight = Math.max(weight, weights.get(list));
+                    if (++positions[list] < lists[list].size()) {
+                        cursors.add(list);
+                    }
+                }
+                if (!visitor.visit(next, weight)) {
+                    return;
+                }
+            }
+        }
+
+        // списки идут по невозрастанию веса, поэтому первый список с фильмом и даёт его вес
+        int weightOf(long filmId) {
+            for (int i = 0; i < postings.size(); i++) {
+                if (postings.get(i).contains(filmId)) {
+                    return weights.get(i);
+                }
+            }
+            return 0;
+        }
+    }
+
+    @FunctionalInterface
+    private interface ScoredVisitor {
+        // false прекращает обход
+        boolean visit(long filmId, int weight);
+    }
+
+    // Отсортированный список ID с быстрым добавлением в конец: новые фильмы получают ID больше всех прежних,
+    // поэтому при создании фильма ID дописывается в свободный хвост массива без копирования.
+    // Читатели берут неизменяемую пару (массив, длина) и не видят записей за её пределами;
+    // вставка в середину и удаление (только при обновлении фильма) копируют массив.
+    // Список, из которого удалён последний ID, закрывается и больше не принимает записей
+    private static final class Postings {
+        private final ReentrantLock writeLock = new ReentrantLock();
+        private volatile Snapshot snapshot = new Snapshot(new long[2], 0);
+        private boolean retired;
+
+        // false, если список уже закрыт и ID нужно добавить в новый
+        boolean add(long filmId) {
+            writeLock.lock();
+            try {
+                if (retired) {
+                    return false;
+                }
+                long[] ids = snapshot.ids();
+                int size = snapshot.size();
+                if (size == 0 || ids[size - 1] < filmId) {
+                    if (size == ids.length) {
+                        ids = Arrays.copyOf(ids, size * 2);
+                    }
+                    ids[size] = filmId;
+                    snapshot = new Snapshot(ids, size + 1);
+                    return true;
+                }
+                int index = Arrays.binarySearch(ids, 0, size, filmId);
+                if (index >= 0) {
+                    return true;
+                }
+                int insertAt = -index - 1;
+                long[] updated = new long[Math.max(ids.length, size + 1)];
+                System.arraycopy(ids, 0, updated, 0, insertAt);
+                updated[insertAt] = filmId;
+                System.arraycopy(ids, insertAt, updated, insertAt + 1, size - insertAt);
+                snapshot = new Snapshot(updated, size + 1);
+                return true;
+            } finally {
+                writeLock.unlock();
+            }
+        }
+
+        // true, если список опустел и закрыт: его нужно убрать из словаря
+        boolean remove(long filmId) {
+            writeLock.lock();
+            try {
+                long[] ids = snapshot.ids();
+                int size = snapshot.size();
+                int index = Arrays.binarySearch(ids, 0, size, filmId);
+                if (index < 0) {
+                    return false;
+                }
+                long[] updated = new long[ids.length];
+                System.arraycopy(ids, 0, updated, 0, index);
+                System.arraycopy(ids, index + 1, updated, index, size - index - 1);
+                snapshot = new Snapshot(updated, size - 1);
+                retired = size == 1;
+                return retired;
+            } finally {
+                writeLock.unlock();
+            }
+        }
+
+        boolean contains(long filmId) {
+            Snapshot current = snapshot;
+            return Arrays.binarySearch(current.ids(), 0, current.size(), filmId) >= 0;
+        }
+
+        int size() {
+            return snapshot.size();
+        }
+
+        private record Snapshot(long[] ids, int size) {
+        }
+    }
+}
@@ -1,19 +1,38 @@
 package ru.yandex.practicum.filmorate.storage;
 
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmFilter;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface FilmStorage {
 
     List<Film> findAll();
 
+    List<Film> findPage(Long afterId, int limit);
+
+    void forEach(Consumer<Film> action);
+
     Film create(Film film);
 
+    List<Film> createAll(List<Film> films);
+
     Film update(Film updatingFilm);
 
     Optional<Film> findById(Long id);
 
+    long count();
+
+    List<Film> findAllById(long[] ids);
+
+    // ID фильмов, в названии или описании которых есть все слова запроса (как слова или их начала),
+    // по убыванию релевантности
+    long[] search(String query, int limit);
+
+    // ID фильмов, подходящих под диапазоны фильтра, в заданном им порядке (при равенстве — по ID)
+    long[] findIds(FilmFilter filter, int limit);
+
     void deleteAll(); // Для тестирования
 }
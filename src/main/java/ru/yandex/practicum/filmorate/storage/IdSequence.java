@@ -0,0 +1,33 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+// Общий для хранилищ генератор ID: максимальный существующий ID вычисляется один раз,
+// дальше каждый новый ID выдаётся атомарным инкрементом за O(1)
+public class IdSequence {
+    private static final long NOT_SEEDED = -1;
+
+    private final LongSupplier maxExistingId;
+    private final AtomicLong lastId = new AtomicLong(NOT_SEEDED);
+
+    public IdSequence(LongSupplier maxExistingId) {
+        this.maxExistingId = maxExistingId;
+    }
+
+    // Засев и инкремент — один CAS: если между чтением и записью прошёл reset, CAS не удастся
+    // и ID будет выдан заново уже от пересчитанного максимума
+    public long next() {
+        while (true) {
+            long last = lastId.get();
+            long id = (last == NOT_SEEDED ? maxExistingId.getAsLong() : last) + 1;
+            if (lastId.compareAndSet(last, id)) {
+                return id;
+            }
+        }
+    }
+
+    public void reset() {
+        lastId.set(NOT_SEEDED);
+    }
+}
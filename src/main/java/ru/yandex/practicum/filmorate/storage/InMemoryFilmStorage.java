@@ -1,15 +1,39 @@
 package ru.yandex.practicum.filmorate.storage;
 
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmFilter;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 
 @Slf4j
-@Component
+@Component(StorageCacheConfig.FILM_STORAGE)
+@Profile("!db")
+@RequiredArgsConstructor
 public class InMemoryFilmStorage implements FilmStorage {
-    private final Map<Long, Film> films = new HashMap<>();
+    // корень кучи — худший из отобранных: меньше лайков, при равенстве больший ID
+    private static final Comparator<Ranked> LEAST_POPULAR_FIRST = Comparator.comparingInt(Ranked::likes)
+            .thenComparing(Comparator.comparingLong(Ranked::filmId).reversed());
+
+    private final ConcurrentNavigableMap<Long, Film> films = new ConcurrentSkipListMap<>();
+    private final StripedLock locks = new StripedLock(64);
+    private final IdSequence idSequence = new IdSequence(() -> films.keySet().stream().mapToLong(id -> id).max().orElse(0));
+    // size() у ConcurrentSkipListMap обходит всю карту, поэтому размер считается отдельно
+    private final LongAdder size = new LongAdder();
+    private final FilmSearchIndex searchIndex = new FilmSearchIndex();
+    private final FilmRangeIndex releaseDateIndex = new FilmRangeIndex();
+    private final FilmRangeIndex durationIndex = new FilmRangeIndex();
+    @Qualifier(StorageCacheConfig.LIKE_STORAGE)
+    private final LikeStorage likes;
+    private volatile StorageJournal journal = StorageJournal.DISABLED;
 
 
     @Override
@@ -17,17 +41,42 @@ public class InMemoryFilmStorage implements FilmStorage {
         return new ArrayList<>(films.values());
     }
 
+    @Override
+    public List<Film> findPage(Long afterId, int limit) {
+        return (afterId == null ? films : films.tailMap(afterId, false)).values().stream().limit(limit).toList();
+    }
+
+    @Override
+    public void forEach(Consumer<Film> action) {
+        films.values().forEach(action);
+    }
+
     @Override
     public Film create(Film film) {
-        film.setId(getNextId());
-        films.put(film.getId(), film);
-        log.info("Успешное добавление фильма: {}. ID: {}", film.getName(), film.getId());
+        journal.awaitDurable(insert(film));
         return film;
     }
 
+    @Override
+    public List<Film> createAll(List<Film> createdFilms) {
+        long sequence = 0;
+        for (Film film : createdFilms) {
+            sequence = insert(film);
+        }
+        journal.awaitDurable(sequence);
+        return createdFilms;
+    }
+
     @Override
     public Film update(Film updatingFilm) {
-        films.put(updatingFilm.getId(), updatingFilm);
+        // Изменение, индексы и запись в журнал идут под блокировкой фильма,
+        // поэтому порядок записей в журнале совпадает с порядком изменений
+        long sequence = locks.withLock(updatingFilm.getId(), () -> {
+            films.put(updatingFilm.getId(), updatingFilm);
+            index(updatingFilm);
+            return journal.putFilm(updatingFilm);
+        });
+        journal.awaitDurable(sequence);
         return updatingFilm;
     }
 
@@ -36,14 +85,119 @@ public class InMemoryFilmStorage implements FilmStorage {
         return Optional.ofNullable(films.get(id));
     }
 
+    @Override
+    public long count() {
+        return size.sum();
+    }
+
+    @Override
+    public List<Film> findAllById(long[] ids) {
+        List<Film> found = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            Film film = films.get(id);
+            if (film != null) {
+                found.add(film);
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public long[] search(String query, int limit) {
+        return searchIndex.search(query, limit);
+    }
+
+    // Диапазон обходится по индексу даты выхода, если она задана, иначе по индексу продолжительности;
+    // второе условие проверяется у найденных фильмов. Для порядка по популярности лучшие limit фильмов
+    // отбираются ограниченной кучей, иначе обход останавливается, набрав limit фильмов
+    @Override
+    public long[] findIds(FilmFilter filter, int limit) {
+        FilmRangeIndex index;
+        long from;
+        long to;
+        if (filter.hasReleaseRange()) {
+            index = releaseDateIndex;
+            from = filter.getReleasedFrom() == null ? Long.MIN_VALUE : filter.getReleasedFrom().toEpochDay();
+            to = filter.getReleasedTo() == null ? Long.MAX_VALUE : filter.getReleasedTo().toEpochDay();
+        } else {
+            index = durationIndex;
+            from = filter.getMinDuration() == null ? Long.MIN_VALUE : filter.getMinDuration();
+            to = filter.getMaxDuration() == null ? Long.MAX_VALUE : filter.getMaxDuration();
+        }
+        if (!filter.isPopular()) {
+            List<Film> found = new ArrayList<>(Math.min(limit, 1024));
+            index.forEachInRange(from, to, filmId -> {
+                Film film = films.get(filmId);
+                if (film != null && filter.matches(film)) {
+                    found.add(film);
+                }
+                return found.size() < limit;
+            });
+            return found.stream().mapToLong(Film::getId).toArray();
+        }
+        // число лайков фиксируется при отборе: параллельный лайк не должен менять порядок внутри кучи
+        PriorityQueue<Ranked> top = new PriorityQueue<>(LEAST_POPULAR_FIRST);
+        index.forEachInRange(from, to, filmId -> {
+            Film film = films.get(filmId);
+            if (film != null && filter.matches(film)) {
+                top.add(new Ranked(film.getLikesCount(), filmId));
+                if (top.size() > limit) {
+                    top.poll();
+                }
+            }
+            return true;
+        });
+        long[] ids = new long[top.size()];
+        for (int i = ids.length - 1; i >= 0; i--) {
+            ids[i] = top.poll().filmId();
+        }
+        return ids;
+    }
+
+    void attachJournal(StorageJournal journal) {
+        this.journal = journal;
+    }
+
+    // Восстановление из снимка: фильм сохраняется с исходным ID, лайки к этому моменту уже в хранилище лайков
+    void restore(Film film) {
+        film.setLikes(likes.likesOf(film.getId()));
+        if (films.put(film.getId(), film) == null) {
+            size.increment();
+        }
+        index(film);
+        idSequence.reset();
+    }
+
     @Override
     public void deleteAll() {
         films.clear();
+        searchIndex.clear();
+        releaseDateIndex.clear();
+        durationIndex.clear();
+        idSequence.reset();
+        size.reset();
+        journal.awaitDurable(journal.clearFilms());
     }
 
-    private long getNextId() {
-        long currentMaxId = films.keySet().stream().mapToLong(id -> id).max().orElse(0);
-        return ++currentMaxId;
+    private void index(Film film) {
+        searchIndex.index(film);
+        releaseDateIndex.update(film.getId(), film.getReleaseDate() == null ? null : film.getReleaseDate().toEpochDay());
+        durationIndex.update(film.getId(), film.getDuration());
+    }
+
+    // Запись в журнал идёт до публикации фильма: изменения, сделанные с ним другими запросами,
+    // всегда окажутся в журнале после него
+    private long insert(Film film) {
+        film.setId(idSequence.next());
+        film.setLikes(likes.likesOf(film.getId()));
+        StorageJournal current = journal;
+        long sequence = current.appendAndPublish(() -> current.putFilm(film), () -> films.put(film.getId(), film));
+        size.increment();
+        index(film);
+        log.info("Успешное добавление фильма: {}. ID: {}", film.getName(), film.getId());
+        return sequence;
+    }
 
+    private record Ranked(int likes, long filmId) {
     }
 }
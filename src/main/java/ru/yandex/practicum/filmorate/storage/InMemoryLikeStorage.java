@@ -0,0 +1,165 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.FilmLike;
+import ru.yandex.practicum.filmorate.model.FilmLikes;
+import ru.yandex.practicum.filmorate.util.LongCounter;
+import ru.yandex.practicum.filmorate.util.LongSortedSet;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Component(StorageCacheConfig.LIKE_STORAGE)
+@Profile("!db")
+public class InMemoryLikeStorage implements LikeStorage {
+    private final Map<Long, FilmLikes> likesByFilm = new ConcurrentHashMap<>();
+    // обратный индекс пользователь -> лайкнутые фильмы, меняется вместе с лайками фильма под его блокировкой
+    private final Map<Long, LongSortedSet> filmsByUser = new ConcurrentHashMap<>();
+    private static final long UNCHANGED = -1;
+    private static final LongSortedSet NO_LIKES = new LongSortedSet();
+
+    private final FilmPopularityIndex popularityIndex = new FilmPopularityIndex();
+    private final StripedLock locks = new StripedLock(64);
+    private volatile StorageJournal journal = StorageJournal.DISABLED;
+
+    @Override
+    public FilmLikes likesOf(Long filmId) {
+        return likesByFilm.computeIfAbsent(filmId, id -> {
+            popularityIndex.update(id, () -> 0);
+            return new FilmLikes();
+        });
+    }
+
+    @Override
+    public LikeChange addLike(Long filmId, Long userId) {
+        return applyOne(filmId, userId, true);
+    }
+
+    @Override
+    public LikeChange removeLike(Long filmId, Long userId) {
+        return applyOne(filmId, userId, false);
+    }
+
+    @Override
+    public boolean[] addLikes(List<FilmLike> batch) {
+        return applyAll(batch, true);
+    }
+
+    @Override
+    public boolean[] removeLikes(List<FilmLike> batch) {
+        return applyAll(batch, false);
+    }
+
+    @Override
+    public List<Long> findPopularFilmIds(int count) {
+        return popularityIndex.top(count);
+    }
+
+    // ответ берётся из обратного индекса, без обхода фильмов
+    @Override
+    public long[] findLikedFilmIds(Long userId) {
+        return likedBy(userId).toArray();
+    }
+
+    // Совместная фильтрация по разреженной матрице лайков: сначала по обратному индексу считаются общие лайки
+    // с каждым, кто лайкал те же фильмы, затем фильмы лучших соседей набирают оценку, равную этим пересечениям.
+    // Обходятся только ненулевые клетки матрицы, счётчики примитивные, отбор — ограниченной кучей
+    @Override
+    public long[] findFilmRecommendations(Long userId, int limit) {
+        long self = userId;
+        long[] likedFilms = likedBy(self).toArray();
+        if (likedFilms.length == 0) {
+            return new long[0];
+        }
+        LongCounter overlaps = new LongCounter((int) Math.min(likedFilms.length * 16L, 1 << 20));
+        for (long filmId : likedFilms) {
+            FilmLikes likes = likesByFilm.get(filmId);
+            if (likes != null) {
+                likes.userIds().forEach(overlaps::increment);
+            }
+        }
+        long[] neighbours = overlaps.top(RECOMMENDATION_NEIGHBOURS, otherId -> otherId == self);
+        LongCounter scores = new LongCounter(neighbours.length * 16);
+        for (long neighbourId : neighbours) {
+            int overlap = overlaps.get(neighbourId);
+            likedBy(neighbourId).forEach(filmId -> scores.add(filmId, overlap));
+        }
+        return scores.top(limit, filmId -> Arrays.binarySearch(likedFilms, filmId) >= 0);
+    }
+
+    void attachJournal(StorageJournal journal) {
+        this.journal = journal;
+    }
+
+    void restore(long filmId, long[] userIds) {
+        FilmLikes likes = new FilmLikes(userIds);
+        likesByFilm.put(filmId, likes);
+        popularityIndex.update(filmId, likes::count);
+        for (long userId : userIds) {
+            filmsByUser.computeIfAbsent(userId, id -> new LongSortedSet()).add(filmId);
+        }
+    }
+
+    @Override
+    public void deleteAll() {
+        likesByFilm.clear();
+        filmsByUser.clear();
+        popularityIndex.clear();
+        journal.awaitDurable(journal.clearLikes());
+    }
+
+    private LikeChange applyOne(Long filmId, Long userId, boolean added) {
+        FilmLikes likes = likesOf(filmId);
+        long sequence = apply(likes, filmId, userId, added);
+        if (sequence != UNCHANGED) {
+            popularityIndex.update(filmId, likes::count);
+        }
+        journal.awaitDurable(sequence);
+        return new LikeChange(likes.count(), sequence != UNCHANGED);
+    }
+
+    private boolean[] applyAll(List<FilmLike> batch, boolean added) {
+        boolean[] changed = new boolean[batch.size()];
+        Set<Long> touchedFilms = new HashSet<>();
+        long lastSequence = UNCHANGED;
+        for (int i = 0; i < batch.size(); i++) {
+            FilmLike like = batch.get(i);
+            long sequence = apply(likesOf(like.getFilmId()), like.getFilmId(), like.getUserId(), added);
+            changed[i] = sequence != UNCHANGED;
+            if (changed[i]) {
+                touchedFilms.add(like.getFilmId());
+                lastSequence = Math.max(lastSequence, sequence);
+            }
+        }
+        // позиция в рейтинге пересчитывается один раз на фильм, а не на каждый лайк пакета
+        touchedFilms.forEach(filmId -> popularityIndex.update(filmId, likesOf(filmId)::count));
+        journal.awaitDurable(lastSequence);
+        return changed;
+    }
+
+    // Изменение и его запись в журнал идут под блокировкой фильма,
+    // поэтому порядок записей в журнале совпадает с порядком изменений
+    private long apply(FilmLikes likes, long filmId, long userId, boolean added) {
+        return locks.withLock(filmId, () -> {
+            boolean changed = added ? likes.add(userId) : likes.remove(userId);
+            if (!changed) {
+                return UNCHANGED;
+            }
+            if (added) {
+                filmsByUser.computeIfAbsent(userId, id -> new LongSortedSet()).add(filmId);
+            } else {
+                likedBy(userId).remove(filmId);
+            }
+            return journal.like(filmId, userId, added);
+        });
+    }
+
+    private LongSortedSet likedBy(long userId) {
+        return filmsByUser.getOrDefault(userId, NO_LIKES);
+    }
+}
@@ -1,34 +1,119 @@
 package ru.yandex.practicum.filmorate.storage;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.Friendship;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.util.LongCounter;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 
 @Slf4j
-@Component
+@Component(StorageCacheConfig.USER_STORAGE)
+@Profile("!db")
 public class InMemoryUserStorage implements UserStorage {
-    private final Map<Long, User> users = new HashMap<>();
+    private final ConcurrentNavigableMap<Long, User> users = new ConcurrentSkipListMap<>();
+    private static final long UNCHANGED = -1;
+
+    private final StripedLock locks = new StripedLock(64);
+    private final IdSequence idSequence = new IdSequence(() -> users.keySet().stream().mapToLong(id -> id).max().orElse(0));
+    // size() у ConcurrentSkipListMap обходит всю карту, поэтому размер считается отдельно
+    private final LongAdder size = new LongAdder();
+    // занятые имейлы и логины: проверка и занятие выполняются одной атомарной операцией
+    private final UniqueIndex emails = UniqueIndex.ignoringCase();
+    private final UniqueIndex logins = UniqueIndex.exact();
+    private volatile StorageJournal journal = StorageJournal.DISABLED;
 
     @Override
     public List<User> findAll() {
         return new ArrayList<>(users.values());
     }
 
+    @Override
+    public List<User> findPage(Long afterId, int limit) {
+        return (afterId == null ? users : users.tailMap(afterId, false)).values().stream().limit(limit).toList();
+    }
+
+    @Override
+    public void forEach(Consumer<User> action) {
+        users.values().forEach(action);
+    }
+
+    @Override
+    public void reserveCredentials(String email, String login) {
+        if (!emails.reserve(email)) {
+            log.warn("Обнаружен уже используемый имейл: {}", email);
+            throw new ValidationException(EMAIL_TAKEN);
+        }
+        if (!logins.reserve(login)) {
+            emails.release(email);
+            log.warn("Обнаружен уже используемый логин: {}", login);
+            throw new ValidationException(LOGIN_TAKEN);
+        }
+    }
+
+    @Override
+    public void releaseCredentials(String email, String login) {
+        emails.release(email);
+        logins.release(login);
+    }
+
     @Override
     public User create(User user) {
-        user.setId(getNextId());
-        users.put(user.getId(), user);
-        log.info("Успешное создание пользователя: {}. ID: {}", user.getLogin(), user.getId());
+        journal.awaitDurable(insert(user));
         return user;
     }
 
+    @Override
+    public List<User> createAll(List<User> createdUsers) {
+        long sequence = 0;
+        for (User user : createdUsers) {
+            sequence = insert(user);
+        }
+        journal.awaitDurable(sequence);
+        return createdUsers;
+    }
+
     @Override
     public User update(User updatedUser) {
-        users.put(updatedUser.getId(), updatedUser);
+        // под блокировкой пользователя обновление не разойдётся с параллельным изменением его друзей
+        long sequence = locks.withLock(updatedUser.getId(), () -> {
+            User current = getExisting(updatedUser.getId());
+            boolean emailChanged = !emails.sameKey(current.getEmail(), updatedUser.getEmail());
+            boolean loginChanged = !logins.sameKey(current.getLogin(), updatedUser.getLogin());
+            if (emailChanged && !emails.reserve(updatedUser.getEmail())) {
+                log.warn("Обнаружен уже используемый имейл: {}", updatedUser.getEmail());
+                throw new ValidationException(EMAIL_TAKEN);
+            }
+            if (loginChanged && !logins.reserve(updatedUser.getLogin())) {
+                if (emailChanged) {
+                    emails.release(updatedUser.getEmail());
+                }
+                log.warn("Обнаружен уже используемый логин: {}", updatedUser.getLogin());
+                throw new ValidationException(LOGIN_TAKEN);
+            }
+            if (updatedUser != current) {
+                updatedUser.getFriendIds().clear();
+                updatedUser.getFriendIds().addAll(current.getFriendIds().toArray());
+            }
+            users.put(updatedUser.getId(), updatedUser);
+            if (emailChanged) {
+                emails.release(current.getEmail());
+            }
+            if (loginChanged) {
+                logins.release(current.getLogin());
+            }
+            return journal.putUser(updatedUser);
+        });
+        journal.awaitDurable(sequence);
         return updatedUser;
-
     }
 
     @Override
@@ -36,16 +121,155 @@ public class InMemoryUserStorage implements UserStorage {
         return Optional.ofNullable(users.get(id));
     }
 
+    @Override
+    public long count() {
+        return size.sum();
+    }
+
+    @Override
+    public List<User> findAllById(long[] ids) {
+        List<User> found = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            User user = users.get(id);
+            if (user != null) {
+                found.add(user);
+            }
+        }
+        return found;
+    }
+
+    // Обход двух шагов по графу дружбы: общие друзья считаются в примитивных счётчиках,
+    // лучшие кандидаты отбираются ограниченной кучей, так что память не зависит от числа пройденных связей
+    @Override
+    public long[] findFriendRecommendations(Long userId, int limit) {
+        long self = userId;
+        long[] friendIds = getExisting(userId).getFriendIds().toArray();
+        LongCounter mutualFriends = new LongCounter((int) Math.min(friendIds.length * 16L, 1 << 20));
+        for (long friendId : friendIds) {
+            User friend = users.get(friendId);
+            if (friend != null) {
+                friend.getFriendIds().forEach(mutualFriends::increment);
+            }
+        }
+        return mutualFriends.top(limit, candidateId -> candidateId == self
+                || Arrays.binarySearch(friendIds, candidateId) >= 0);
+    }
+
+    @Override
+    public boolean addFriend(Long userId, Long friendId) {
+        long sequence = link(userId, friendId);
+        journal.awaitDurable(sequence);
+        return sequence != UNCHANGED;
+    }
+
+    @Override
+    public boolean removeFriend(Long userId, Long friendId) {
+        long sequence = unlink(userId, friendId);
+        journal.awaitDurable(sequence);
+        return sequence != UNCHANGED;
+    }
+
+    @Override
+    public boolean[] addFriends(List<Friendship> friendships) {
+        boolean[] changed = new boolean[friendships.size()];
+        long lastSequence = UNCHANGED;
+        for (int i = 0; i < friendships.size(); i++) {
+            long sequence = link(friendships.get(i).getUserId(), friendships.get(i).getFriendId());
+            changed[i] = sequence != UNCHANGED;
+            lastSequence = Math.max(lastSequence, sequence);
+        }
+        journal.awaitDurable(lastSequence);
+        return changed;
+    }
+
+    @Override
+    public boolean[] removeFriends(List<Friendship> friendships) {
+        boolean[] changed = new boolean[friendships.size()];
+        long lastSequence = UNCHANGED;
+        for (int i = 0; i < friendships.size(); i++) {
+            long sequence = unlink(friendships.get(i).getUserId(), friendships.get(i).getFriendId());
+            changed[i] = sequence != UNCHANGED;
+            lastSequence = Math.max(lastSequence, sequence);
+        }
+        journal.awaitDurable(lastSequence);
+        return changed;
+    }
+
+    void attachJournal(StorageJournal journal) {
+        this.journal = journal;
+    }
+
+    // Восстановление из снимка и журнала: пользователь сохраняется с исходным ID. Друзья в записи журнала
+    // не хранятся, поэтому при повторе обновления они переносятся из текущей версии пользователя
+    void restore(User user) {
+        User current = users.get(user.getId());
+        if (current != null) {
+            user.getFriendIds().addAll(current.getFriendIds().toArray());
+            releaseCredentials(current.getEmail(), current.getLogin());
+        }
+        emails.reserve(user.getEmail());
+        logins.reserve(user.getLogin());
+        if (users.put(user.getId(), user) == null) {
+            size.increment();
+        }
+        idSequence.reset();
+    }
+
     @Override
     public void deleteAll() {
         users.clear();
+        emails.clear();
+        logins.clear();
+        idSequence.reset();
+        size.reset();
+        journal.awaitDurable(journal.clearUsers());
     }
 
-    private long getNextId() {
-        long currentMaxId = users.keySet().stream().mapToLong(id -> id).max().orElse(0);
-        return ++currentMaxId;
+    // Запись в журнал идёт до публикации пользователя: дружба с ним всегда окажется в журнале после него
+    // Имейл и логин обычно уже заняты через reserveCredentials; повторное занятие ничего не меняет,
+    // а пользователи, созданные в обход него (бенчмарки, прямые вызовы хранилища), тоже попадают в индекс
+    private long insert(User user) {
+        emails.reserve(user.getEmail());
+        logins.reserve(user.getLogin());
+        user.setId(idSequence.next());
+        StorageJournal current = journal;
+        long sequence = current.appendAndPublish(() -> current.putUser(user), () -> users.put(user.getId(), user));
+        size.increment();
+        log.info("Успешное создание пользователя: {}. ID: {}", user.getLogin(), user.getId());
+        return sequence;
+    }
 
+    // Изменение и его запись в журнал идут под блокировками обоих пользователей,
+    // поэтому порядок записей в журнале совпадает с порядком изменений
+    private long link(Long userId, Long friendId) {
+        return locks.withLocks(userId, friendId, () -> {
+            User user = getExisting(userId);
+            User friend = getExisting(friendId);
+            if (!user.getFriendIds().add(friendId)) {
+                return UNCHANGED;
+            }
+            friend.getFriendIds().add(userId);
+            return journal.friendship(userId, friendId, true);
+        });
     }
 
+    private long unlink(Long userId, Long friendId) {
+        return locks.withLocks(userId, friendId, () -> {
+            User user = getExisting(userId);
+            User friend = getExisting(friendId);
+            if (!user.getFriendIds().remove(friendId)) {
+                return UNCHANGED;
+            }
+            friend.getFriendIds().remove(userId);
+            return journal.friendship(userId, friendId, false);
+        });
+    }
 
+    private User getExisting(Long userId) {
+        User user = users.get(userId);
+        if (user == null) {
+            throw new NotFoundException("Пользователь с id: " + userId + " не найден");
+        }
+        return user;
+    }
 }
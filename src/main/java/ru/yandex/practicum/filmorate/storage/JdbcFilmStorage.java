@@ -0,0 +1,210 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmFilter;
+import ru.yandex.practicum.filmorate.model.FilmLikes;
+
+import java.sql.Date;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+@Slf4j
+@Repository(StorageCacheConfig.FILM_STORAGE)
+@Profile("db")
+@RequiredArgsConstructor
+public class JdbcFilmStorage implements FilmStorage {
+    private static final String SELECT_FILMS = "SELECT id, name, description, release_date, duration FROM films";
+    private static final String INSERT_FILM = "INSERT INTO films (name, description, release_date, duration) VALUES (?, ?, ?, ?)";
+    private static final String SELECT_LIKES = "SELECT film_id, user_id FROM likes WHERE film_id IN (:ids) ORDER BY film_id, user_id";
+    // без полнотекстового индекса БД слова ищутся регулярным выражением по тексту в нижнем регистре с «ё» -> «е»
+    private static final String NORMALIZED_NAME = "REPLACE(LOWER(name), 'ё', 'е')";
+    private static final String NORMALIZED_DESCRIPTION = "REPLACE(LOWER(COALESCE(description, '')), 'ё', 'е')";
+    // слово текста начинается с начала строки или после символа, который не буква и не цифра, как в FilmSearchIndex
+    private static final String WORD_START = "(^|[^\\p{L}\\p{Nd}])";
+    private static final String WORD_END = "([^\\p{L}\\p{Nd}]|$)";
+    private static final int STREAM_PAGE_SIZE = 1000;
+    private static final RowMapper<Film> FILM_MAPPER = (rs, rowNum) -> {
+        Film film = new Film();
+        film.setId(rs.getLong("id"));
+        film.setName(rs.getString("name"));
+        film.setDescription(rs.getString("description"));
+        Date releaseDate = rs.getDate("release_date");
+        film.setReleaseDate(releaseDate == null ? null : releaseDate.toLocalDate());
+        film.setDuration(rs.getObject("duration", Long.class));
+        return film;
+    };
+
+    private final NamedParameterJdbcTemplate jdbc;
+
+    @Override
+    public List<Film> findAll() {
+        return withLikes(jdbc.query(SELECT_FILMS + " ORDER BY id", FILM_MAPPER));
+    }
+
+    @Override
+    public List<Film> findPage(Long afterId, int limit) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("after", afterId == null ? 0 : afterId)
+                .addValue("limit", limit);
+        return withLikes(jdbc.query(SELECT_FILMS + " WHERE id > :after ORDER BY id LIMIT :limit", params, FILM_MAPPER));
+    }
+
+    @Override
+    public void forEach(Consumer<Film> action) {
+        Long afterId = null;
+        List<Film> page;
+        do {
+            page = findPage(afterId, STREAM_PAGE_SIZE);
+            page.forEach(action);
+            afterId = page.isEmpty() ? afterId : page.getLast().getId();
+        } while (page.size() == STREAM_PAGE_SIZE);
+    }
+
+    @Override
+    public Film create(Film film) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbc.update("INSERT INTO films (name, description, release_date, duration) "
+                + "VALUES (:name, :description, :releaseDate, :duration)", filmParams(film), keyHolder, new String[]{"id"});
+        film.setId(keyHolder.getKeyAs(Long.class));
+        film.setLikes(new FilmLikes());
+        log.info("Успешное добавление фильма: {}. ID: {}", film.getName(), film.getId());
+        return film;
+    }
+
+    @Override
+    public List<Film> createAll(List<Film> films) {
+        JdbcSupport.insertAll(jdbc.getJdbcTemplate(), INSERT_FILM, films, (statement, film) -> {
+            statement.setString(1, film.getName());
+            statement.setString(2, film.getDescription());
+            statement.setObject(3, film.getReleaseDate() == null ? null : Date.valueOf(film.getReleaseDate()), Types.DATE);
+            statement.setObject(4, film.getDuration(), Types.BIGINT);
+        }, (film, id) -> {
+            film.setId(id);
+            film.setLikes(new FilmLikes());
+        });
+        log.info("Пакетно добавлено фильмов: {}", films.size());
+        return films;
+    }
+
+    @Override
+    public Film update(Film updatingFilm) {
+        jdbc.update("UPDATE films SET name = :name, description = :description, release_date = :releaseDate, "
+                + "duration = :duration WHERE id = :id", filmParams(updatingFilm));
+        return updatingFilm;
+    }
+
+    @Override
+    public Optional<Film> findById(Long id) {
+        List<Film> films = jdbc.query(SELECT_FILMS + " WHERE id = :id", Map.of("id", id), FILM_MAPPER);
+        return withLikes(films).stream().findFirst();
+    }
+
+    @Override
+    public List<Film> findAllById(long[] ids) {
+        List<Long> idList = Arrays.stream(ids).boxed().toList();
+        List<Film> found = new ArrayList<>(ids.length);
+        for (int from = 0; from < idList.size(); from += JdbcSupport.IN_CLAUSE_CHUNK) {
+            List<Long> chunk = idList.subList(from, Math.min(from + JdbcSupport.IN_CLAUSE_CHUNK, idList.size()));
+            found.addAll(jdbc.query(SELECT_FILMS + " WHERE id IN (:ids) ORDER BY id", Map.of("ids", chunk), FILM_MAPPER));
+        }
+        return withLikes(found);
+    }
+
+    @Override
+    public long[] search(String query, int limit) {
+        String[] tokens = FilmSearchIndex.tokenize(query);
+        if (tokens.length == 0) {
+            return new long[0];
+        }
+        MapSqlParameterSource params = new MapSqlParameterSource().addValue("limit", limit);
+        List<String> conditions = new ArrayList<>(tokens.length);
+        List<String> weights = new ArrayList<>(tokens.length);
+        for (int i = 0; i < tokens.length; i++) {
+            // слова запроса состоят только из букв и цифр, экранировать в них нечего
+            params.addValue("prefix" + i, WORD_START + tokens[i]);
+            params.addValue("word" + i, WORD_START + tokens[i] + WORD_END);
+            String namePrefix = "REGEXP_LIKE(" + NORMALIZED_NAME + ", :prefix" + i + ")";
+            String descriptionPrefix = "REGEXP_LIKE(" + NORMALIZED_DESCRIPTION + ", :prefix" + i + ")";
+            conditions.add("(" + namePrefix + " OR " + descriptionPrefix + ")");
+            // вес слова запроса - лучшее из его совпадений, с теми же весами, что в FilmSearchIndex
+            weights.add("CASE WHEN REGEXP_LIKE(" + NORMALIZED_NAME + ", :word" + i + ") THEN 4"
+                    + " WHEN " + namePrefix + " THEN 3"
+                    + " WHEN REGEXP_LIKE(" + NORMALIZED_DESCRIPTION + ", :word" + i + ") THEN 2 ELSE 1 END");
+        }
+        String sql = "SELECT id FROM films WHERE " + String.join(" AND ", conditions)
+                + " ORDER BY " + String.join(" + ", weights) + " DESC, id LIMIT :limit";
+        return jdbc.queryForList(sql, params, Long.class).stream().mapToLong(Long::longValue).toArray();
+    }
+
+    // диапазоны читаются по films_release_date_idx и films_duration_idx, порядок популярности — по films_popularity_idx
+    @Override
+    public long[] findIds(FilmFilter filter, int limit) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("releasedFrom", filter.getReleasedFrom())
+                .addValue("releasedTo", filter.getReleasedTo())
+                .addValue("minDuration", filter.getMinDuration())
+                .addValue("maxDuration", filter.getMaxDuration())
+                .addValue("limit", limit);
+        List<String> conditions = new ArrayList<>();
+        if (filter.getReleasedFrom() != null) {
+            conditions.add("release_date >= :releasedFrom");
+        }
+        if (filter.getReleasedTo() != null) {
+            conditions.add("release_date <= :releasedTo");
+        }
+        if (filter.getMinDuration() != null) {
+            conditions.add("duration >= :minDuration");
+        }
+        if (filter.getMaxDuration() != null) {
+            conditions.add("duration <= :maxDuration");
+        }
+        String order = filter.isPopular() ? "likes_count DESC, id"
+                : filter.hasReleaseRange() ? "release_date, id" : "duration, id";
+        String sql = "SELECT id FROM films WHERE " + String.join(" AND ", conditions) + " ORDER BY " + order + " LIMIT :limit";
+        return jdbc.queryForList(sql, params, Long.class).stream().mapToLong(Long::longValue).toArray();
+    }
+
+    @Override
+    public long count() {
+        Long count = jdbc.getJdbcTemplate().queryForObject("SELECT COUNT(*) FROM films", Long.class);
+        return count == null ? 0 : count;
+    }
+
+    @Override
+    public void deleteAll() {
+        jdbc.getJdbcTemplate().execute("DELETE FROM films");
+        jdbc.getJdbcTemplate().execute("ALTER TABLE films ALTER COLUMN id RESTART WITH 1");
+    }
+
+    private List<Film> withLikes(List<Film> films) {
+        if (films.isEmpty()) {
+            return films;
+        }
+        Map<Long, long[]> likes = JdbcSupport.loadRelations(jdbc, SELECT_LIKES, films.stream().map(Film::getId).toList());
+        films.forEach(film -> film.setLikes(new FilmLikes(likes.getOrDefault(film.getId(), new long[0]))));
+        return films;
+    }
+
+    private MapSqlParameterSource filmParams(Film film) {
+        return new MapSqlParameterSource()
+                .addValue("id", film.getId())
+                .addValue("name", film.getName())
+                .addValue("description", film.getDescription())
+                .addValue("releaseDate", film.getReleaseDate())
+                .addValue("duration", film.getDuration());
+    }
+}
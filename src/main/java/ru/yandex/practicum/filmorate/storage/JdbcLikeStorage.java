@@ -0,0 +1,132 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import ru.yandex.practicum.filmorate.model.FilmLike;
+import ru.yandex.practicum.filmorate.model.FilmLikes;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Repository(StorageCacheConfig.LIKE_STORAGE)
+@Profile("db")
+@RequiredArgsConstructor
+public class JdbcLikeStorage implements LikeStorage {
+    private static final String INSERT_LIKE = "INSERT INTO likes (film_id, user_id) SELECT :film, :user WHERE NOT EXISTS "
+            + "(SELECT 1 FROM likes WHERE film_id = :film AND user_id = :user)";
+    private static final String DELETE_LIKE = "DELETE FROM likes WHERE film_id = :film AND user_id = :user";
+    // соседи ищутся по первичному ключу likes (film_id, user_id), их фильмы — по likes_user_idx (user_id, film_id)
+    private static final String SELECT_FILM_RECOMMENDATIONS = "WITH neighbours AS ("
+            + "SELECT other.user_id, COUNT(*) AS overlap FROM likes mine JOIN likes other ON other.film_id = mine.film_id "
+            + "WHERE mine.user_id = :user AND other.user_id <> :user "
+            + "GROUP BY other.user_id ORDER BY overlap DESC, other.user_id LIMIT :neighbours) "
+            + "SELECT candidate.film_id FROM neighbours JOIN likes candidate ON candidate.user_id = neighbours.user_id "
+            + "WHERE NOT EXISTS (SELECT 1 FROM likes own WHERE own.user_id = :user AND own.film_id = candidate.film_id) "
+            + "GROUP BY candidate.film_id ORDER BY SUM(neighbours.overlap) DESC, candidate.film_id LIMIT :limit";
+    private final NamedParameterJdbcTemplate jdbc;
+
+    @Override
+    public FilmLikes likesOf(Long filmId) {
+        long[] userIds = jdbc.queryForList("SELECT user_id FROM likes WHERE film_id = :film", Map.of("film", filmId), Long.class)
+                .stream().mapToLong(Long::longValue).toArray();
+        return new FilmLikes(userIds);
+    }
+
+    @Override
+    @Transactional
+    public LikeChange addLike(Long filmId, Long userId) {
+        Map<String, Long> params = Map.of("film", filmId, "user", userId);
+        boolean inserted = false;
+        try {
+            inserted = jdbc.update(INSERT_LIKE, params) > 0;
+            if (inserted) {
+                // счётчик в films нужен индексу популярности и меняется в той же транзакции, что и лайк
+                jdbc.update("UPDATE films SET likes_count = likes_count + 1 WHERE id = :film", params);
+            }
+        } catch (DuplicateKeyException e) {
+            // тот же лайк параллельно поставил другой запрос
+        }
+        return new LikeChange(likesCount(filmId), inserted);
+    }
+
+    @Override
+    @Transactional
+    public LikeChange removeLike(Long filmId, Long userId) {
+        Map<String, Long> params = Map.of("film", filmId, "user", userId);
+        boolean deleted = jdbc.update(DELETE_LIKE, params) > 0;
+        if (deleted) {
+            jdbc.update("UPDATE films SET likes_count = likes_count - 1 WHERE id = :film", params);
+        }
+        return new LikeChange(likesCount(filmId), deleted);
+    }
+
+    @Override
+    @Transactional
+    public boolean[] addLikes(List<FilmLike> batch) {
+        return applyAll(INSERT_LIKE, batch, 1);
+    }
+
+    @Override
+    @Transactional
+    public boolean[] removeLikes(List<FilmLike> batch) {
+        return applyAll(DELETE_LIKE, batch, -1);
+    }
+
+    @Override
+    public List<Long> findPopularFilmIds(int count) {
+        return jdbc.queryForList("SELECT id FROM films ORDER BY likes_count DESC, id LIMIT :count",
+                Map.of("count", count), Long.class);
+    }
+
+    // читается по likes_user_idx (user_id, film_id) без сортировки
+    @Override
+    public long[] findLikedFilmIds(Long userId) {
+        return jdbc.queryForList("SELECT film_id FROM likes WHERE user_id = :user ORDER BY film_id",
+                Map.of("user", userId), Long.class).stream().mapToLong(Long::longValue).toArray();
+    }
+
+    @Override
+    public long[] findFilmRecommendations(Long userId, int limit) {
+        Map<String, Object> params = Map.of("user", userId, "neighbours", RECOMMENDATION_NEIGHBOURS, "limit", limit);
+        return jdbc.queryForList(SELECT_FILM_RECOMMENDATIONS, params, Long.class).stream().mapToLong(Long::longValue).toArray();
+    }
+
+    @Override
+    public void deleteAll() {
+        jdbc.getJdbcTemplate().execute("DELETE FROM likes");
+        jdbc.getJdbcTemplate().execute("UPDATE films SET likes_count = 0");
+    }
+
+    // Все лайки пакета уходят одним batchUpdate, а счётчики likes_count меняются одним обновлением на фильм
+    private boolean[] applyAll(String sql, List<FilmLike> batch, int sign) {
+        boolean[] changed = new boolean[batch.size()];
+        if (batch.isEmpty()) {
+            return changed;
+        }
+        int[] updated = jdbc.batchUpdate(sql, batch.stream()
+                .map(like -> new MapSqlParameterSource().addValue("film", like.getFilmId()).addValue("user", like.getUserId()))
+                .toArray(MapSqlParameterSource[]::new));
+        Map<Long, Integer> deltas = new HashMap<>();
+        for (int i = 0; i < batch.size(); i++) {
+            changed[i] = updated[i] > 0;
+            if (changed[i]) {
+                deltas.merge(batch.get(i).getFilmId(), sign, Integer::sum);
+            }
+        }
+        jdbc.batchUpdate("UPDATE films SET likes_count = likes_count + :delta WHERE id = :film", deltas.entrySet().stream()
+                .map(delta -> new MapSqlParameterSource().addValue("film", delta.getKey()).addValue("delta", delta.getValue()))
+                .toArray(MapSqlParameterSource[]::new));
+        return changed;
+    }
+
+    private int likesCount(Long filmId) {
+        Integer count = jdbc.queryForObject("SELECT likes_count FROM films WHERE id = :film", Map.of("film", filmId), Integer.class);
+        return count == null ? 0 : count;
+    }
+}
@@ -0,0 +1,67 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.LongStream;
+
+// Общие приёмы JDBC-хранилищ: пакетная вставка с получением ID и загрузка связей (лайки, друзья)
+// одним запросом на группу сущностей вместо запроса на каждую
+final class JdbcSupport {
+    static final int IN_CLAUSE_CHUNK = 1000;
+    static final int BATCH_SIZE = 500;
+
+    private JdbcSupport() {
+    }
+
+    interface StatementBinder<T> {
+        void bind(PreparedStatement statement, T item) throws SQLException;
+    }
+
+    interface IdConsumer<T> {
+        void accept(T item, long id);
+    }
+
+    static <T> void insertAll(JdbcTemplate jdbc, String sql, List<T> items, StatementBinder<T> binder, IdConsumer<T> ids) {
+        jdbc.execute((ConnectionCallback<Void>) connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(sql, new String[]{"id"})) {
+                for (int from = 0; from < items.size(); from += BATCH_SIZE) {
+                    List<T> batch = items.subList(from, Math.min(from + BATCH_SIZE, items.size()));
+                    for (T item : batch) {
+                        binder.bind(statement, item);
+                        statement.addBatch();
+                    }
+                    statement.executeBatch();
+                    try (ResultSet keys = statement.getGeneratedKeys()) {
+                        for (T item : batch) {
+                            keys.next();
+                            ids.accept(item, keys.getLong(1));
+                        }
+                    }
+                }
+            }
+            return null;
+        });
+    }
+
+    // Запрос должен возвращать пары (владелец, связанный ID) и содержать параметр :ids
+    static Map<Long, long[]> loadRelations(NamedParameterJdbcTemplate jdbc, String sql, List<Long> ownerIds) {
+        Map<Long, LongStream.Builder> builders = new HashMap<>();
+        for (int from = 0; from < ownerIds.size(); from += IN_CLAUSE_CHUNK) {
+            List<Long> chunk = ownerIds.subList(from, Math.min(from + IN_CLAUSE_CHUNK, ownerIds.size()));
+            jdbc.query(sql, Map.of("ids", chunk), (ResultSet rs) -> {
+                builders.computeIfAbsent(rs.getLong(1), id -> LongStream.builder()).add(rs.getLong(2));
+            });
+        }
+        Map<Long, long[]> relations = new HashMap<>(builders.size());
+        builders.forEach((ownerId, builder) -> relations.put(ownerId, builder.build().toArray()));
+        return relations;
+    }
+}
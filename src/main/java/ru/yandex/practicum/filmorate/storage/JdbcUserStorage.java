@@ -0,0 +1,298 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.sql.Date;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+@Slf4j
+@Repository(StorageCacheConfig.USER_STORAGE)
+@Profile("db")
+@RequiredArgsConstructor
+public class JdbcUserStorage implements UserStorage {
+    private static final String SELECT_USERS = "SELECT id, email, login, name, birthday FROM users";
+    private static final String INSERT_USER = "INSERT INTO users (email, login, name, birthday) VALUES (?, ?, ?, ?)";
+    private static final String SELECT_FRIENDS = "SELECT user_id, friend_id FROM friendships WHERE user_id IN (:ids) "
+            + "ORDER BY user_id, friend_id";
+    private static final String INSERT_FRIENDSHIP = "INSERT INTO friendships (user_id, friend_id) SELECT :user, :friend "
+            + "WHERE NOT EXISTS (SELECT 1 FROM friendships WHERE user_id = :user AND friend_id = :friend)";
+    private static final String DELETE_FRIENDSHIP = "DELETE FROM friendships WHERE user_id = :user AND friend_id = :friend";
+    private static final String EMAIL_EXISTS = "SELECT COUNT(*) FROM users WHERE email_key = LOWER(:email) AND id <> :id";
+    private static final String LOGIN_EXISTS = "SELECT COUNT(*) FROM users WHERE login = :login AND id <> :id";
+    // первичный ключ friendships отдаёт друзей каждого друга без сортировки таблицы
+    private static final String SELECT_FRIEND_RECOMMENDATIONS = "SELECT candidate.friend_id FROM friendships friend "
+            + "JOIN friendships candidate ON candidate.user_id = friend.friend_id "
+            + "WHERE friend.user_id = :id AND candidate.friend_id <> :id AND NOT EXISTS "
+            + "(SELECT 1 FROM friendships own WHERE own.user_id = :id AND own.friend_id = candidate.friend_id) "
+            + "GROUP BY candidate.friend_id ORDER BY COUNT(*) DESC, candidate.friend_id LIMIT :limit";
+    private static final int STREAM_PAGE_SIZE = 1000;
+    private static final RowMapper<User> USER_MAPPER = (rs, rowNum) -> {
+        User user = new User();
+        user.setId(rs.getLong("id"));
+        user.setEmail(rs.getString("email"));
+        user.setLogin(rs.getString("login"));
+        user.setName(rs.getString("name"));
+        Date birthday = rs.getDate("birthday");
+        user.setBirthday(birthday == null ? null : birthday.toLocalDate());
+        return user;
+    };
+
+    private final NamedParameterJdbcTemplate jdbc;
+    // Окончательно уникальность обеспечивают ограничения БД; здесь лежат данные, занятые, но ещё не вставленные,
+    // чтобы параллельные регистрации и записи одного импорта отклонялись до вставки с понятным сообщением
+    private final UniqueIndex pendingEmails = UniqueIndex.ignoringCase();
+    private final UniqueIndex pendingLogins = UniqueIndex.exact();
+
+    @Override
+    public List<User> findAll() {
+        return withFriends(jdbc.query(SELECT_USERS + " ORDER BY id", USER_MAPPER));
+    }
+
+    @Override
+    public List<User> findPage(Long afterId, int limit) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("after", afterId == null ? 0 : afterId)
+                .addValue("limit", limit);
+        return withFriends(jdbc.query(SELECT_USERS + " WHERE id > :after ORDER BY id LIMIT :limit", params, USER_MAPPER));
+    }
+
+    @Override
+    public void forEach(Consumer<User> action) {
+        Long afterId = null;
+        List<User> page;
+        do {
+            page = findPage(afterId, STREAM_PAGE_SIZE);
+            page.forEach(action);
+            afterId = page.isEmpty() ? afterId : page.getLast().getId();
+        } while (page.size() == STREAM_PAGE_SIZE);
+    }
+
+    @Override
+    public void reserveCredentials(String email, String login) {
+        if (!pendingEmails.reserve(email)) {
+            throw emailTaken(email);
+        }
+        if (!pendingLogins.reserve(login)) {
+            pendingEmails.release(email);
+            throw loginTaken(login);
+        }
+        try {
+            checkCredentials(0L, email, login);
+        } catch (ValidationException e) {
+            releaseCredentials(email, login);
+            throw e;
+        }
+    }
+
+    @Override
+    public void releaseCredentials(String email, String login) {
+        pendingEmails.release(email);
+        pendingLogins.release(login);
+    }
+
+    @Override
+    public User create(User user) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        try {
+            jdbc.update("INSERT INTO users (email, login, name, birthday) VALUES (:email, :login, :name, :birthday)",
+                    userParams(user), keyHolder, new String[]{"id"});
+        } catch (DuplicateKeyException e) {
+            throw new ValidationException("Этот имейл или логин уже используется");
+        } finally {
+            releaseCredentials(user.getEmail(), user.getLogin());
+        }
+        user.setId(keyHolder.getKeyAs(Long.class));
+        log.info("Успешное создание пользователя: {}. ID: {}", user.getLogin(), user.getId());
+        return user;
+    }
+
+    @Override
+    public List<User> createAll(List<User> users) {
+        try {
+            JdbcSupport.insertAll(jdbc.getJdbcTemplate(), INSERT_USER, users, (statement, user) -> {
+                statement.setString(1, user.getEmail());
+                statement.setString(2, user.getLogin());
+                statement.setString(3, user.getName());
+                statement.setObject(4, user.getBirthday() == null ? null : Date.valueOf(user.getBirthday()), Types.DATE);
+            }, User::setId);
+        } catch (DuplicateKeyException e) {
+            throw new ValidationException("Этот имейл или логин уже используется");
+        } finally {
+            users.forEach(user -> releaseCredentials(user.getEmail(), user.getLogin()));
+        }
+        log.info("Пакетно создано пользователей: {}", users.size());
+        return users;
+    }
+
+    // Предварительная проверка даёт точное сообщение, а гонку двух обновлений разрешают ограничения БД
+    @Override
+    public User update(User updatedUser) {
+        checkCredentials(updatedUser.getId(), updatedUser.getEmail(), updatedUser.getLogin());
+        try {
+            jdbc.update("UPDATE users SET email = :email, login = :login, name = :name, birthday = :birthday WHERE id = :id",
+                    userParams(updatedUser));
+        } catch (DuplicateKeyException e) {
+            throw new ValidationException("Этот имейл или логин уже используется");
+        }
+        return updatedUser;
+    }
+
+    @Override
+    public Optional<User> findById(Long id) {
+        List<User> users = jdbc.query(SELECT_USERS + " WHERE id = :id", Map.of("id", id), USER_MAPPER);
+        return withFriends(users).stream().findFirst();
+    }
+
+    @Override
+    public List<User> findAllById(long[] ids) {
+        List<Long> idList = Arrays.stream(ids).boxed().toList();
+        List<User> found = new ArrayList<>(ids.length);
+        for (int from = 0; from < idList.size(); from += JdbcSupport.IN_CLAUSE_CHUNK) {
+            List<Long> chunk = idList.subList(from, Math.min(from + JdbcSupport.IN_CLAUSE_CHUNK, idList.size()));
+            found.addAll(jdbc.query(SELECT_USERS + " WHERE id IN (:ids) ORDER BY id", Map.of("ids", chunk), USER_MAPPER));
+        }
+        return withFriends(found);
+    }
+
+    @Override
+    public long[] findFriendRecommendations(Long userId, int limit) {
+        return jdbc.queryForList(SELECT_FRIEND_RECOMMENDATIONS, Map.of("id", userId, "limit", limit), Long.class)
+                .stream().mapToLong(Long::longValue).toArray();
+    }
+
+    @Override
+    @Transactional
+    public boolean addFriend(Long userId, Long friendId) {
+        try {
+            if (jdbc.update(INSERT_FRIENDSHIP, Map.of("user", userId, "friend", friendId)) == 0) {
+                return false;
+            }
+            jdbc.update(INSERT_FRIENDSHIP, Map.of("user", friendId, "friend", userId));
+            return true;
+        } catch (DuplicateKeyException e) {
+            // ту же дружбу параллельно добавил другой запрос
+            return false;
+        }
+    }
+
+    @Override
+    @Transactional
+    public boolean removeFriend(Long userId, Long friendId) {
+        int[] deleted = jdbc.batchUpdate(DELETE_FRIENDSHIP,
+                new MapSqlParameterSource[]{
+                        new MapSqlParameterSource().addValue("user", userId).addValue("friend", friendId),
+                        new MapSqlParameterSource().addValue("user", friendId).addValue("friend", userId)
+                });
+        return deleted[0] > 0;
+    }
+
+    @Override
+    @Transactional
+    public boolean[] addFriends(List<Friendship> friendships) {
+        return applyAll(INSERT_FRIENDSHIP, friendships);
+    }
+
+    @Override
+    @Transactional
+    public boolean[] removeFriends(List<Friendship> friendships) {
+        return applyAll(DELETE_FRIENDSHIP, friendships);
+    }
+
+    @Override
+    public long count() {
+        Long count = jdbc.getJdbcTemplate().queryForObject("SELECT COUNT(*) FROM users", Long.class);
+        return count == null ? 0 : count;
+    }
+
+    @Override
+    public void deleteAll() {
+        jdbc.getJdbcTemplate().execute("DELETE FROM users");
+        jdbc.getJdbcTemplate().execute("ALTER TABLE users ALTER COLUMN id RESTART WITH 1");
+    }
+
+    // Каждая дружба хранится двумя строками: обе уходят в один batchUpdate, изменение определяется по прямой
+    private boolean[] applyAll(String sql, List<Friendship> friendships) {
+        boolean[] changed = new boolean[friendships.size()];
+        if (friendships.isEmpty()) {
+            return changed;
+        }
+        MapSqlParameterSource[] params = new MapSqlParameterSource[friendships.size() * 2];
+        for (int i = 0; i < friendships.size(); i++) {
+            Friendship friendship = friendships.get(i);
+            params[2 * i] = new MapSqlParameterSource()
+                    .addValue("user", friendship.getUserId()).addValue("friend", friendship.getFriendId());
+            params[2 * i + 1] = new MapSqlParameterSource()
+                    .addValue("user", friendship.getFriendId()).addValue("friend", friendship.getUserId());
+        }
+        int[] updated = jdbc.batchUpdate(sql, params);
+        for (int i = 0; i < changed.length; i++) {
+            changed[i] = updated[2 * i] > 0;
+        }
+        return changed;
+    }
+
+    private void checkCredentials(Long id, String email, String login) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("id", id)
+                .addValue("email", email)
+                .addValue("login", login);
+        if (exists(EMAIL_EXISTS, params)) {
+            throw emailTaken(email);
+        }
+        if (exists(LOGIN_EXISTS, params)) {
+            throw loginTaken(login);
+        }
+    }
+
+    private boolean exists(String sql, MapSqlParameterSource params) {
+        Long count = jdbc.queryForObject(sql, params, Long.class);
+        return count != null && count > 0;
+    }
+
+    private ValidationException emailTaken(String email) {
+        log.warn("Обнаружен уже используемый имейл: {}", email);
+        return new ValidationException(EMAIL_TAKEN);
+    }
+
+    private ValidationException loginTaken(String login) {
+        log.warn("Обнаружен уже используемый логин: {}", login);
+        return new ValidationException(LOGIN_TAKEN);
+    }
+
+    private List<User> withFriends(List<User> users) {
+        if (users.isEmpty()) {
+            return users;
+        }
+        Map<Long, long[]> friends = JdbcSupport.loadRelations(jdbc, SELECT_FRIENDS, users.stream().map(User::getId).toList());
+        users.forEach(user -> user.getFriendIds().addAll(friends.getOrDefault(user.getId(), new long[0])));
+        return users;
+    }
+
+    private MapSqlParameterSource userParams(User user) {
+        return new MapSqlParameterSource()
+                .addValue("id", user.getId())
+                .addValue("email", user.getEmail())
+                .addValue("login", user.getLogin())
+                .addValue("name", user.getName())
+                .addValue("birthday", user.getBirthday());
+    }
+}
@@ -0,0 +1,37 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import ru.yandex.practicum.filmorate.model.FilmLike;
+import ru.yandex.practicum.filmorate.model.FilmLikes;
+
+import java.util.List;
+
+public interface LikeStorage {
+    // сколько самых похожих пользователей учитывается при рекомендации фильмов
+    int RECOMMENDATION_NEIGHBOURS = 100;
+
+    FilmLikes likesOf(Long filmId);
+
+    LikeChange addLike(Long filmId, Long userId);
+
+    LikeChange removeLike(Long filmId, Long userId);
+
+    // Пакетные варианты: элемент результата true, если соответствующий лайк изменил данные
+    boolean[] addLikes(List<FilmLike> batch);
+
+    boolean[] removeLikes(List<FilmLike> batch);
+
+    List<Long> findPopularFilmIds(int count);
+
+    // ID фильмов, лайкнутых пользователем, по возрастанию
+    long[] findLikedFilmIds(Long userId);
+
+    // Фильмы, которые лайкнули пользователи с наибольшим числом общих лайков с userId и которые он сам ещё
+    // не лайкал. Вклад соседа в оценку фильма равен числу общих с ним лайков, при равенстве оценок — по ID фильма
+    long[] findFilmRecommendations(Long userId, int limit);
+
+    void deleteAll();
+
+    // число лайков фильма после операции и признак того, что лайк изменил данные
+    record LikeChange(int count, boolean changed) {
+    }
+}
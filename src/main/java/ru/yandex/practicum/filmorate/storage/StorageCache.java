@@ -0,0 +1,97 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import com.github.benmanes.caffeine.cache.Cache;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Function;
+import java.util.function.LongFunction;
+
+// Кэш сущностей по ID для кэширующих хранилищ. Загрузка идёт вне карты кэша: get(id, loader) у Caffeine
+// выполняет загрузчик внутри ConcurrentHashMap.compute, то есть под synchronized, и блокирующий запрос к БД
+// закреплял бы виртуальный поток за несущим. Загруженное значение кладётся, только если сущность не сбросили
+// за время загрузки: каждый сброс увеличивает счётчик полосы ID, а запись сверяет его под блокировкой ключа.
+// Так загрузка, прочитавшая старую версию до обновления, не вернёт её в кэш после сброса
+class StorageCache<T> {
+    private static final int STRIPES = 64;
+
+    private final Cache<Long, T> cache;
+    private final AtomicLongArray invalidations = new AtomicLongArray(STRIPES);
+    private final AtomicLong epoch = new AtomicLong();
+
+    StorageCache(Cache<Long, T> cache) {
+        this.cache = cache;
+    }
+
+    Optional<T> get(long id, LongFunction<Optional<T>> loader) {
+        T cached = cache.getIfPresent(id);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        long stamp = invalidations.get(stripeOf(id));
+        Optional<T> loaded = loader.apply(id);
+        loaded.ifPresent(value -> putIfNotInvalidated(id, value, stamp));
+        return loaded;
+    }
+
+    // Найденные в кэше сущности возвращаются сразу, отсутствующие догружаются одним пакетным запросом
+    Map<Long, T> getAll(long[] ids, Function<long[], List<T>> loader, Function<T, Long> idOf) {
+        Map<Long, T> found = new HashMap<>(cache.getAllPresent(Arrays.stream(ids).boxed().toList()));
+        long[] missing = Arrays.stream(ids).filter(id -> !found.containsKey(id)).distinct().toArray();
+        if (missing.length == 0) {
+            return found;
+        }
+        Map<Long, Long> stampById = new HashMap<>(missing.length * 2);
+        for (long id : missing) {
+            stampById.put(id, invalidations.get(stripeOf(id)));
+        }
+        for (T value : loader.apply(missing)) {
+            long id = idOf.apply(value);
+            found.put(id, value);
+            putIfNotInvalidated(id, value, stampById.get(id));
+        }
+        return found;
+    }
+
+    // ID создаваемой сущности заранее неизвестен, поэтому до записи в хранилище берётся общий счётчик сбросов:
+    // если за время создания сбрасывали хоть что-то, сущность не кладётся и просто загрузится при первом чтении
+    long epoch() {
+        return epoch.get();
+    }
+
+    void putCreated(long id, T value, long epochBefore) {
+        cache.asMap().compute(id, (key, current) -> epoch.get() == epochBefore ? value : current);
+    }
+
+    // счётчики увеличиваются до удаления: запись, сверяющая их позже, уже не положит старое значение
+    void invalidate(long id) {
+        invalidations.incrementAndGet(stripeOf(id));
+        epoch.incrementAndGet();
+        cache.invalidate(id);
+    }
+
+    void invalidateAll() {
+        for (int i = 0; i < STRIPES; i++) {
+            invalidations.incrementAndGet(i);
+        }
+        epoch.incrementAndGet();
+        cache.invalidateAll();
+    }
+
+    // Сверка и запись идут под блокировкой ключа в карте кэша; внутри нет ввода-вывода, только сравнение
+    private void putIfNotInvalidated(long id, T value, long stamp) {
+        int stripe = stripeOf(id);
+        cache.asMap().compute(id, (key, current) -> invalidations.get(stripe) == stamp ? value : current);
+    }
+
+    private static int stripeOf(long id) {
+        int hash = Long.hashCode(id);
+        hash ^= hash >>> 16;
+        return hash & (STRIPES - 1);
+    }
+}
@@ -0,0 +1,58 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.time.Duration;
+
+// Кэш поверх любой реализации хранилищ. Основные хранилища регистрируются под фиксированными именами,
+// а кэширующие обёртки становятся @Primary, поэтому сервисы получают их без изменений в коде
+@Configuration
+@ConditionalOnProperty(name = "filmorate.cache.enabled", havingValue = "true")
+public class StorageCacheConfig {
+    public static final String FILM_STORAGE = "filmStorage";
+    public static final String USER_STORAGE = "userStorage";
+    public static final String LIKE_STORAGE = "likeStorage";
+
+    @Value("${filmorate.cache.maximum-size:10000}")
+    private long maximumSize;
+    @Value("${filmorate.cache.ttl:5m}")
+    private Duration ttl;
+
+    @Bean
+    @Primary
+    public CachingFilmStorage cachingFilmStorage(@Qualifier(FILM_STORAGE) FilmStorage films, MeterRegistry registry) {
+        return new CachingFilmStorage(films, this.<Film>newCache("films", registry));
+    }
+
+    @Bean
+    @Primary
+    public CachingUserStorage cachingUserStorage(@Qualifier(USER_STORAGE) UserStorage users, MeterRegistry registry) {
+        return new CachingUserStorage(users, this.<User>newCache("users", registry));
+    }
+
+    @Bean
+    @Primary
+    public CachingLikeStorage cachingLikeStorage(@Qualifier(LIKE_STORAGE) LikeStorage likes, CachingFilmStorage films) {
+        return new CachingLikeStorage(likes, films);
+    }
+
+    private <T> Cache<Long, T> newCache(String name, MeterRegistry registry) {
+        Cache<Long, T> cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        return CaffeineCacheMetrics.monitor(registry, cache, name);
+    }
+}
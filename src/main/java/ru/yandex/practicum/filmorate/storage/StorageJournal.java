@@ -0,0 +1,75 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.util.function.LongSupplier;
+
+// Журнал изменений in-memory хранилищ. Методы записи ставят изменение в очередь и возвращают его номер;
+// awaitDurable ждёт сохранения на диск, если этого требует политика fsync
+public interface StorageJournal {
+    StorageJournal DISABLED = new StorageJournal() {
+        @Override
+        public long putFilm(Film film) {
+            return 0;
+        }
+
+        @Override
+        public long putUser(User user) {
+            return 0;
+        }
+
+        @Override
+        public long like(long filmId, long userId, boolean added) {
+            return 0;
+        }
+
+        @Override
+        public long friendship(long userId, long friendId, boolean added) {
+            return 0;
+        }
+
+        @Override
+        public long clearFilms() {
+            return 0;
+        }
+
+        @Override
+        public long clearUsers() {
+            return 0;
+        }
+
+        @Override
+        public long clearLikes() {
+            return 0;
+        }
+
+        @Override
+        public void awaitDurable(long sequence) {
+        }
+    };
+
+    long putFilm(Film film);
+
+    long putUser(User user);
+
+    long like(long filmId, long userId, boolean added);
+
+    long friendship(long userId, long friendId, boolean added);
+
+    long clearFilms();
+
+    long clearUsers();
+
+    long clearLikes();
+
+    void awaitDurable(long sequence);
+
+    // Новая сущность пишется в журнал до публикации в хранилище, чтобы изменения, сделанные с ней другими
+    // запросами, шли в журнале после неё. Реализация с сегментами не переключает сегмент между этими шагами
+    default long appendAndPublish(LongSupplier append, Runnable publish) {
+        long sequence = append.getAsLong();
+        publish.run();
+        return sequence;
+    }
+}
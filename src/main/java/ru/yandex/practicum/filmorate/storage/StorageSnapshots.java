@@ -0,0 +1,301 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+// Периодические снимки in-memory хранилищ в компактный двоичный файл.
+// Запись идёт обходом хранилищ без блокировок (снимок нечёткий: параллельные изменения могут попасть
+// в него частично), через буфер FileChannel во временный файл, который затем атомарно заменяет прежний.
+// При старте файл отображается в память, проверяется контрольная сумма, и сущности кладутся
+// в хранилища напрямую, минуя API и проверки сервисов. Если включён журнал, поверх снимка повторяются
+// изменения из журнала начиная с сегмента, открытого перед записью снимка: так нечёткий снимок
+// доводится до согласованного состояния, а записанный снимок заодно сжимает журнал
+@Slf4j
+@Component
+@Profile("!db")
+@EnableScheduling
+@ConditionalOnProperty(name = "filmorate.snapshot.enabled", havingValue = "true")
+@RequiredArgsConstructor
+public class StorageSnapshots implements SmartInitializingSingleton {
+    private static final int MAGIC = 0x464D5253;
+    private static final int VERSION = 2;
+    private static final byte END = 0;
+    private static final byte USER = 1;
+    private static final byte FILM = 2;
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final InMemoryFilmStorage films;
+    private final InMemoryUserStorage users;
+    private final InMemoryLikeStorage likes;
+    private final Optional<FileStorageJournal> journal;
+    @Value("${filmorate.snapshot.path:./data/snapshot.bin}")
+    private final Path path;
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private long journalSegment;
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        restore();
+        journal.ifPresent(this::replayJournal);
+    }
+
+    @Scheduled(initialDelayString = "${filmorate.snapshot.interval:PT1M}", fixedDelayString = "${filmorate.snapshot.interval:PT1M}")
+    public void scheduledWrite() {
+        write();
+    }
+
+    @Scheduled(fixedDelayString = "${filmorate.journal.compact-check:PT10S}")
+    public void compactJournal() {
+        if (journal.isPresent() && journal.get().needsCompaction()) {
+            log.info("Журнал изменений превысил порог, записывается снимок");
+            write();
+        }
+    }
+
+    @PreDestroy
+    public void writeOnShutdown() {
+        write();
+    }
+
+    public void write() {
+        writeLock.lock();
+        try {
+            long started = System.nanoTime();
+            Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            long segment = journal.map(FileStorageJournal::rotate).orElse(0L);
+            long[] counts = new long[2];
+            try (SnapshotWriter writer = new SnapshotWriter(FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))) {
+                writer.putInt(MAGIC);
+                writer.putInt(VERSION);
+                writer.putLong(segment);
+                users.forEach(user -> {
+                    writeUser(writer, user);
+                    counts[0]++;
+                });
+                films.forEach(film -> {
+                    writeFilm(writer, film);
+                    counts[1]++;
+                });
+                writer.put(END);
+                writer.finish();
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            journal.ifPresent(written -> written.deleteBefore(segment));
+            log.info("Снимок хранилищ записан: пользователей {}, фильмов {}, {} байт за {} мс",
+                    counts[0], counts[1], Files.size(path), (System.nanoTime() - started) / 1_000_000);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось записать снимок хранилищ " + path, e);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Повреждённый снимок останавливает запуск: иначе приложение стартовало бы пустым
+    // и следующей записью затёрло бы последние сохранённые данные
+    public boolean restore() {
+        if (!Files.exists(path)) {
+            log.info("Снимок хранилищ {} не найден, хранилища запускаются пустыми", path);
+            return false;
+        }
+        long started = System.nanoTime();
+        long userCount = 0;
+        long filmCount = 0;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE || size < 17) {
+                throw new IllegalStateException("Недопустимый размер снимка хранилищ: " + size + " байт");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            CRC32C crc = new CRC32C();
+            crc.update(buffer.slice(0, (int) size - Long.BYTES));
+            if (crc.getValue() != buffer.getLong((int) size - Long.BYTES)) {
+                throw new IllegalStateException("Контрольная сумма снимка хранилищ " + path + " не совпадает");
+            }
+            int magic = buffer.getInt();
+            int version = buffer.getInt();
+            if (magic != MAGIC || version < 1 || version > VERSION) {
+                throw new IllegalStateException("Неизвестный формат снимка хранилищ " + path);
+            }
+            // снимки первой версии писались без журнала
+            journalSegment = version == 1 ? 0 : buffer.getLong();
+            for (byte tag = buffer.get(); tag != END; tag = buffer.get()) {
+                if (tag == USER) {
+                    users.restore(readUser(buffer));
+                    userCount++;
+                } else if (tag == FILM) {
+                    readFilm(buffer);
+                    filmCount++;
+                } else {
+                    throw new IllegalStateException("Неизвестная запись в снимке хранилищ: " + tag);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось прочитать снимок хранилищ " + path, e);
+        }
+        log.info("Хранилища восстановлены из снимка: пользователей {}, фильмов {} за {} мс",
+                userCount, filmCount, (System.nanoTime() - started) / 1_000_000);
+        return true;
+    }
+
+    private void writeUser(SnapshotWriter writer, User user) {
+        writer.put(USER);
+        EntityCodec.writeUser(writer, user);
+        writer.putLongs(user.getFriendIds().toArray());
+    }
+
+    private User readUser(ByteBuffer buffer) {
+        User user = EntityCodec.readUser(buffer);
+        user.getFriendIds().addAll(BinaryOutput.getLongs(buffer));
+        return user;
+    }
+
+    private void writeFilm(SnapshotWriter writer, Film film) {
+        writer.put(FILM);
+        EntityCodec.writeFilm(writer, film);
+        writer.putLongs(film.getLikedUserIds().toArray());
+    }
+
+    private void readFilm(ByteBuffer buffer) {
+        Film film = EntityCodec.readFilm(buffer);
+        likes.restore(film.getId(), BinaryOutput.getLongs(buffer));
+        films.restore(film);
+    }
+
+    // Повтор журнала идёт через обычные методы хранилищ: журнал к ним ещё не подключён,
+    // поэтому повторённые изменения не записываются в него заново
+    private void replayJournal(FileStorageJournal journal) {
+        journal.replay(journalSegment, new FileStorageJournal.Replay() {
+            @Override
+            public void film(Film film) {
+                films.restore(film);
+            }
+
+            @Override
+            public void user(User user) {
+                users.restore(user);
+            }
+
+            @Override
+            public void like(long filmId, long userId, boolean added) {
+                if (added) {
+                    likes.addLike(filmId, userId);
+                } else {
+                    likes.removeLike(filmId, userId);
+                }
+            }
+
+            @Override
+            public void friendship(long userId, long friendId, boolean added) {
+                try {
+                    if (added) {
+                        users.addFriend(userId, friendId);
+                    } else {
+                        users.removeFriend(userId, friendId);
+                    }
+                } catch (NotFoundException e) {
+                    log.warn("Пропущено изменение дружбы из журнала: {}", e.getMessage());
+                }
+            }
+
+            @Override
+            public void clearFilms() {
+                films.deleteAll();
+            }
+
+            @Override
+            public void clearUsers() {
+                users.deleteAll();
+            }
+
+            @Override
+            public void clearLikes() {
+                likes.deleteAll();
+            }
+        });
+        journal.open();
+        films.attachJournal(journal);
+        users.attachJournal(journal);
+        likes.attachJournal(journal);
+    }
+
+    // Буферизованная запись в файл с подсчётом CRC32C по всему содержимому; сумма дописывается в конец файла
+    private static final class SnapshotWriter extends BinaryOutput implements AutoCloseable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private final CRC32C crc = new CRC32C();
+
+        private SnapshotWriter(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void finish() {
+            flush();
+            buffer.putLong(crc.getValue());
+            buffer.flip();
+            writeFully();
+            try {
+                channel.force(true);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        protected ByteBuffer ensure(int bytes) {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+            return buffer;
+        }
+
+        private void flush() {
+            buffer.flip();
+            crc.update(buffer.duplicate());
+            writeFully();
+            buffer.clear();
+        }
+
+        private void writeFully() {
+            try {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
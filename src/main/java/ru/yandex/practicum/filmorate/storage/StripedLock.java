@@ -0,0 +1,60 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+// Набор блокировок, между которыми распределяются сущности по ID: операции над разными
+// сущностями почти никогда не конкурируют, а глобальной блокировки нет вовсе
+public class StripedLock {
+    private final ReentrantLock[] stripes;
+
+    public StripedLock(int concurrencyLevel) {
+        int size = Integer.highestOneBit(Math.max(1, concurrencyLevel - 1)) << 1;
+        stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    public <T> T withLock(long id, Supplier<T> action) {
+        ReentrantLock lock = stripeFor(id);
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public <T> T withLocks(long firstId, long secondId, Supplier<T> action) {
+        int first = indexOf(firstId);
+        int second = indexOf(secondId);
+        if (first == second) {
+            return withLock(firstId, action);
+        }
+        // захват в порядке номеров полос исключает взаимную блокировку встречных операций
+        ReentrantLock outer = stripes[Math.min(first, second)];
+        ReentrantLock inner = stripes[Math.max(first, second)];
+        outer.lock();
+        try {
+            inner.lock();
+            try {
+                return action.get();
+            } finally {
+                inner.unlock();
+            }
+        } finally {
+            outer.unlock();
+        }
+    }
+
+    private ReentrantLock stripeFor(long id) {
+        return stripes[indexOf(id)];
+    }
+
+    private int indexOf(long id) {
+        int hash = Long.hashCode(id);
+        hash ^= hash >>> 16;
+        return hash & (stripes.length - 1);
+    }
+}
@@ -0,0 +1,47 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
+
+// Множество занятых значений (имейлов, логинов) с атомарным занятием: проверка и добавление
+// выполняются одной операцией ConcurrentHashMap, поэтому два параллельных запроса не займут одно значение
+public class UniqueIndex {
+    private final Set<String> keys = ConcurrentHashMap.newKeySet();
+    private final UnaryOperator<String> normalizer;
+
+    private UniqueIndex(UnaryOperator<String> normalizer) {
+        this.normalizer = normalizer;
+    }
+
+    public static UniqueIndex exact() {
+        return new UniqueIndex(UnaryOperator.identity());
+    }
+
+    // Имейлы сравниваются без учёта регистра
+    public static UniqueIndex ignoringCase() {
+        return new UniqueIndex(value -> value.toLowerCase(Locale.ROOT));
+    }
+
+    public boolean reserve(String value) {
+        return keys.add(normalizer.apply(value));
+    }
+
+    public void release(String value) {
+        keys.remove(normalizer.apply(value));
+    }
+
+    public boolean contains(String value) {
+        return keys.contains(normalizer.apply(value));
+    }
+
+    public boolean sameKey(String first, String second) {
+        return Objects.equals(first == null ? null : normalizer.apply(first), second == null ? null : normalizer.apply(second));
+    }
+
+    public void clear() {
+        keys.clear();
+    }
+}
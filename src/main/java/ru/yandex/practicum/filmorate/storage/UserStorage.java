@@ -1,19 +1,52 @@
 package ru.yandex.practicum.filmorate.storage;
 
+import ru.yandex.practicum.filmorate.model.Friendship;
 import ru.yandex.practicum.filmorate.model.User;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface UserStorage {
+    String EMAIL_TAKEN = "Этот имейл уже используется!";
+    String LOGIN_TAKEN = "Этот логин уже используется";
 
     List<User> findAll();
 
+    List<User> findPage(Long afterId, int limit);
+
+    void forEach(Consumer<User> action);
+
+    // Атомарно занимает имейл (без учёта регистра) и логин нового пользователя или бросает ValidationException.
+    // create и createAll ожидают, что данные уже заняты; при отказе от создания их нужно освободить
+    void reserveCredentials(String email, String login);
+
+    void releaseCredentials(String email, String login);
+
     User create(User user);
 
+    List<User> createAll(List<User> users);
+
+    // Сам проверяет и занимает изменившиеся имейл и логин, освобождая прежние
     User update(User user);
 
     Optional<User> findById(Long id);
 
+    long count();
+
+    List<User> findAllById(long[] ids);
+
+    // ID пользователей, не являющихся друзьями userId, по убыванию числа общих друзей с ним (при равенстве — по ID)
+    long[] findFriendRecommendations(Long userId, int limit);
+
+    boolean addFriend(Long userId, Long friendId);
+
+    boolean removeFriend(Long userId, Long friendId);
+
+    // Пакетные варианты: элемент результата true, если соответствующая пара изменила данные
+    boolean[] addFriends(List<Friendship> friendships);
+
+    boolean[] removeFriends(List<Friendship> friendships);
+
     void deleteAll();
 }
@@ -0,0 +1,140 @@
+package ru.yandex.practicum.filmorate.util;
+
+import java.util.function.LongPredicate;
+
+// Счётчики по ID на открытой адресации: ключи и значения лежат в двух массивах примитивов,
+// поэтому подсчёт по миллионам связей не создаёт ни одного объекта. Не потокобезопасен:
+// рассчитан на один запрос. Нулевой счётчик означает пустую ячейку
+public class LongCounter {
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys;
+    private int[] counts;
+    private int size;
+
+    public LongCounter(int expectedKeys) {
+        int capacity = Integer.highestOneBit(Math.max(MIN_CAPACITY, expectedKeys * 2 - 1)) << 1;
+        keys = new long[capacity];
+        counts = new int[capacity];
+    }
+
+    public void increment(long key) {
+        add(key, 1);
+    }
+
+    // delta должна быть положительной: обнулённый счётчик разорвал бы цепочку проб
+    public void add(long key, int delta) {
+        int slot = slotOf(key);
+        if (counts[slot] == 0) {
+            keys[slot] = key;
+            if (++size * 3 > keys.length * 2) {
+                counts[slot] = delta;
+                grow();
+                return;
+            }
+        }
+        counts[slot] += delta;
+    }
+
+    public int get(long key) {
+        return counts[slotOf(key)];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Ключи с наибольшими счётчиками (при равенстве — с меньшим ID) в порядке убывания.
+    // Отбор идёт через ограниченную кучу из limit ячеек: O(n log limit) без сортировки всех ключей
+    public long[] top(int limit, LongPredicate excluded) {
+        int[] heap = new int[Math.min(limit, size)];
+        int heapSize = 0;
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (counts[slot] == 0 || excluded.test(keys[slot])) {
+                continue;
+            }
+            if (heapSize < heap.length) {
+                heap[heapSize] = slot;
+                siftUp(heap, heapSize++);
+            } else if (heapSize > 0 && better(slot, heap[0])) {
+                heap[0] = slot;
+                siftDown(heap, heapSize);
+            }
+        }
+        long[] result = new long[heapSize];
+        for (int i = heapSize - 1; i >= 0; i--) {
+            result[i] = keys[heap[0]];
+            heap[0] = heap[i];
+            siftDown(heap, i);
+        }
+        return result;
+    }
+
+    // в корне кучи лежит худшая из отобранных ячеек
+    private void siftUp(int[] heap, int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (!better(heap[parent], heap[index])) {
+                return;
+            }
+            swap(heap, parent, index);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int[] heap, int heapSize) {
+        int index = 0;
+        while (true) {
+            int worst = index;
+            int left = 2 * index + 1;
+            int right = left + 1;
+            if (left < heapSize && better(heap[worst], heap[left])) {
+                worst = left;
+            }
+            if (right < heapSize && better(heap[worst], heap[right])) {
+                worst = right;
+            }
+            if (worst == index) {
+                return;
+            }
+            swap(heap, index, worst);
+            index = worst;
+        }
+    }
+
+    private boolean better(int slot, int other) {
+        if (counts[slot] != counts[other]) {
+            return counts[slot] > counts[other];
+        }
+        return keys[slot] < keys[other];
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldCounts = counts;
+        keys = new long[oldKeys.length * 2];
+        counts = new int[oldKeys.length * 2];
+        for (int slot = 0; slot < oldKeys.length; slot++) {
+            if (oldCounts[slot] != 0) {
+                int moved = slotOf(oldKeys[slot]);
+                keys[moved] = oldKeys[slot];
+                counts[moved] = oldCounts[slot];
+            }
+        }
+    }
+
+    private int slotOf(long key) {
+        int mask = keys.length - 1;
+        int slot = Long.hashCode(key * 0x9E3779B97F4A7C15L) & mask;
+        while (counts[slot] != 0 && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static void swap(int[] heap, int first, int second) {
+        int tmp = heap[first];
+        heap[first] = heap[second];
+        heap[second] = tmp;
+    }
+}
@@ -0,0 +1,46 @@
+CREATE TABLE IF NOT EXISTS users (
+    id       BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    email    VARCHAR(255) NOT NULL,
+    login    VARCHAR(255) NOT NULL,
+    name     VARCHAR(255),
+    birthday DATE
+);
+
+-- имейл уникален без учёта регистра: ограничение стоит на вычисляемом столбце с имейлом в нижнем регистре
+ALTER TABLE users ADD COLUMN IF NOT EXISTS email_key VARCHAR(255) GENERATED ALWAYS AS (LOWER(email));
+CREATE UNIQUE INDEX IF NOT EXISTS users_email_key_idx ON users (email_key);
+CREATE UNIQUE INDEX IF NOT EXISTS users_login_idx ON users (login);
+
+CREATE TABLE IF NOT EXISTS films (
+    id           BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    name         VARCHAR(255) NOT NULL,
+    description  VARCHAR(200),
+    release_date DATE,
+    duration     BIGINT,
+    likes_count  INT          NOT NULL DEFAULT 0
+);
+
+-- популярные фильмы читаются по этому индексу без сортировки всей таблицы
+CREATE INDEX IF NOT EXISTS films_popularity_idx ON films (likes_count DESC, id);
+
+-- выборки фильмов по диапазонам даты выхода и продолжительности
+CREATE INDEX IF NOT EXISTS films_release_date_idx ON films (release_date, id);
+CREATE INDEX IF NOT EXISTS films_duration_idx ON films (duration, id);
+
+CREATE TABLE IF NOT EXISTS likes (
+    film_id BIGINT NOT NULL REFERENCES films (id) ON DELETE CASCADE,
+    user_id BIGINT NOT NULL REFERENCES users (id) ON DELETE CASCADE,
+    PRIMARY KEY (film_id, user_id)
+);
+
+CREATE INDEX IF NOT EXISTS likes_user_idx ON likes (user_id, film_id);
+
+-- дружба симметрична и хранится двумя строками; первичный ключ отдаёт друзей пользователя
+-- уже отсортированными, что нужно для пересечения при поиске общих друзей
+CREATE TABLE IF NOT EXISTS friendships (
+    user_id   BIGINT NOT NULL REFERENCES users (id) ON DELETE CASCADE,
+    friend_id BIGINT NOT NULL REFERENCES users (id) ON DELETE CASCADE,
+    PRIMARY KEY (user_id, friend_id)
+);
+
+CREATE INDEX IF NOT EXISTS friendships_friend_idx ON friendships (friend_id);
@@ -1,18 +1,28 @@
 package ru.yandex.practicum.filmorate.ControllersTests;
 
+import com.jayway.jsonpath.JsonPath;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 // CHECKSTYLE:OFF
-@SpringBootTest
+// /films/popular проверяется сразу после лайков, поэтому окно устаревания выключено;
+// само окно проверяет PopularFilmsCacheTest
+@SpringBootTest(properties = "filmorate.popular-cache.max-staleness=PT0S")
 @AutoConfigureMockMvc
 public class FilmControllerTest {
     private final String validTestFilm = """
@@ -36,6 +46,47 @@ public class FilmControllerTest {
         mockMvc.perform(post("/films").contentType(MediaType.APPLICATION_JSON).content(filmJson)).andExpect(status().isInternalServerError());
     }
 
+    private void importFilms(String filmsJson) throws Exception {
+        mockMvc.perform(post("/films/import").contentType(MediaType.APPLICATION_JSON).content(filmsJson))
+                .andExpect(status().isOk());
+    }
+
+    private void updateFilm(String filmJson) throws Exception {
+        mockMvc.perform(put("/films").contentType(MediaType.APPLICATION_JSON).content(filmJson))
+                .andExpect(status().isOk());
+    }
+
+    private void resetUsers() throws Exception {
+        mockMvc.perform(delete("/users/reset"))
+                .andExpect(status().isOk());
+    }
+
+    // пользователь с логином login и почтой login@mail.ru
+    private void createUser(String login) throws Exception {
+        String user = """
+                {"login": "%s", "email": "%s@mail.ru", "birthday": "1990-01-01"}
+                """.formatted(login, login);
+        mockMvc.perform(post("/users").contentType(MediaType.APPLICATION_JSON).content(user))
+                .andExpect(status().isCreated());
+    }
+
+    private void addLikes(String likesJson) throws Exception {
+        mockMvc.perform(put("/films/likes").contentType(MediaType.APPLICATION_JSON).content(likesJson))
+                .andExpect(status().isOk());
+    }
+
+    private double popularRequestsTimed() throws Exception {
+        String metric = mockMvc.perform(get("/actuator/metrics/filmorate.films.popular"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return JsonPath.<Number>read(metric, "$.measurements[0].value").doubleValue();
+    }
+
+    // пакет из одного лайка
+    private static String like(long filmId, long userId) {
+        return "[{\"filmId\": %d, \"userId\": %d}]".formatted(filmId, userId);
+    }
+
     @Autowired
     private MockMvc mockMvc;
 
@@ -273,6 +324,377 @@ public class FilmControllerTest {
 
     }
 
+    @Test
+    void popularFilmsOrderedByLikes() throws Exception {
+        createValidFilm(validTestFilm);
+        createValidFilm(validTestFilm);
+        resetUsers();
+        createUser("filmfan");
+        mockMvc.perform(put("/films/2/like/1"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("1"));
+        mockMvc.perform(get("/films/popular"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].id").value(2))
+                .andExpect(jsonPath("$[0].likesCount").value(1))
+                .andExpect(jsonPath("$[0].likedUserIds[0]").value(1))
+                .andExpect(jsonPath("$[1].id").value(1));
+        mockMvc.perform(delete("/films/2/like/1"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("0"));
+        mockMvc.perform(get("/films/popular").param("count", "1"))
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].id").value(1));
+        // таймер считает и ответы из кэша, а не только пересчёты
+        double timed = popularRequestsTimed();
+        mockMvc.perform(get("/films/popular").param("count", "1"))
+                .andExpect(jsonPath("$[0].id").value(1));
+        assertEquals(timed + 1, popularRequestsTimed());
+        mockMvc.perform(get("/actuator/metrics/filmorate.storage.size").param("tag", "entity:films"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.measurements[0].value").value(2.0));
+    }
+
+    @Test
+    void popularFilmsCacheFollowsLikesAndUpdates() throws Exception {
+        createValidFilm(validTestFilm);
+        createValidFilm(validTestFilm);
+        createValidFilm(validTestFilm);
+        resetUsers();
+        createUser("cachefan");
+        mockMvc.perform(get("/films/popular").param("count", "2"))
+                .andExpect(jsonPath("$[0].id").value(1))
+                .andExpect(jsonPath("$[1].id").value(2));
+        mockMvc.perform(get("/films/popular").param("count", "2"))
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.length()").value(2));
+        mockMvc.perform(put("/films/3/like/1"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/films/popular").param("count", "2"))
+                .andExpect(jsonPath("$[0].id").value(3))
+                .andExpect(jsonPath("$[0].likesCount").value(1))
+                .andExpect(jsonPath("$[1].id").value(1));
+        updateFilm("""
+                {"id": 1, "name": "Renamed", "description": "wow very nice", "releaseDate": "1987-01-01", "duration": 15000}
+                """);
+        mockMvc.perform(get("/films/popular").param("count", "2"))
+                .andExpect(jsonPath("$[1].name").value("Renamed"));
+        mockMvc.perform(delete("/films/3/like/1"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/films/popular").param("count", "2"))
+                .andExpect(jsonPath("$[0].id").value(1))
+                .andExpect(jsonPath("$[1].id").value(2));
+        mockMvc.perform(get("/films/popular").param("count", "0"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void conditionalGetFollowsFilmChanges() throws Exception {
+        createValidFilm(validTestFilm);
+        resetUsers();
+        createUser("etagfan");
+        String tag = mockMvc.perform(get("/films/1"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        mockMvc.perform(get("/films/1").header(HttpHeaders.IF_NONE_MATCH, "\"other\", " + tag))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get("/films/1").header(HttpHeaders.IF_NONE_MATCH, "*"))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get("/films/2").header(HttpHeaders.IF_NONE_MATCH, "*"))
+                .andExpect(status().isNotFound());
+
+        mockMvc.perform(put("/films/1/like/1"))
+                .andExpect(status().isOk());
+        tag = mockMvc.perform(get("/films/1").header(HttpHeaders.IF_NONE_MATCH, tag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.likesCount").value(1))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        // повторный лайк ничего не меняет, и прежняя метка остаётся действительной
+        mockMvc.perform(put("/films/1/like/1"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/films/1").header(HttpHeaders.IF_NONE_MATCH, tag))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(delete("/films/likes").contentType(MediaType.APPLICATION_JSON).content(like(1, 1)))
+                .andExpect(status().isOk());
+        tag = mockMvc.perform(get("/films/1").header(HttpHeaders.IF_NONE_MATCH, tag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.likesCount").value(0))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        mockMvc.perform(delete("/films/1/like/1"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/films/1").header(HttpHeaders.IF_NONE_MATCH, tag))
+                .andExpect(status().isNotModified());
+
+        // после очистки фильм с тем же ID получает новую метку
+        mockMvc.perform(delete("/films/reset"))
+                .andExpect(status().isOk());
+        createValidFilm(validTestFilm);
+        mockMvc.perform(get("/films/1").header(HttpHeaders.IF_NONE_MATCH, tag))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void pagesAndStreamsFilms() throws Exception {
+        createValidFilm(validTestFilm);
+        createValidFilm(validTestFilm);
+        createValidFilm(validTestFilm);
+        mockMvc.perform(get("/films").param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].id").value(1))
+                .andExpect(jsonPath("$[1].id").value(2));
+        mockMvc.perform(get("/films").param("limit", "2").param("after", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].id").value(3));
+        mockMvc.perform(get("/films").param("limit", "0"))
+                .andExpect(status().isBadRequest());
+
+        MvcResult streaming = mockMvc.perform(get("/films").accept("application/x-ndjson"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String body = mockMvc.perform(asyncDispatch(streaming))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        String[] lines = body.split("\n");
+        assertEquals(3, lines.length);
+        assertTrue(lines[2].startsWith("{\"id\":3,"));
+    }
+
+    @Test
+    void batchLikesReportPerPairResults() throws Exception {
+        createValidFilm(validTestFilm);
+        createValidFilm(validTestFilm);
+        resetUsers();
+        createUser("batchfan");
+        String likes = """
+                [
+                  {"filmId": 2, "userId": 1},
+                  {"filmId": 2, "userId": 1},
+                  {"filmId": 9, "userId": 1},
+                  {"filmId": 1, "userId": 7},
+                  {"filmId": 1}
+                ]
+                """;
+        mockMvc.perform(put("/films/likes").contentType(MediaType.APPLICATION_JSON).content(likes))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(5))
+                .andExpect(jsonPath("$[0].filmId").value(2))
+                .andExpect(jsonPath("$[0].status").value("APPLIED"))
+                .andExpect(jsonPath("$[1].status").value("UNCHANGED"))
+                .andExpect(jsonPath("$[2].status").value("NOT_FOUND"))
+                .andExpect(jsonPath("$[3].status").value("NOT_FOUND"))
+                .andExpect(jsonPath("$[4].status").value("INVALID"));
+        mockMvc.perform(get("/films/popular").param("count", "1"))
+                .andExpect(jsonPath("$[0].id").value(2))
+                .andExpect(jsonPath("$[0].likesCount").value(1));
+        mockMvc.perform(delete("/films/likes").contentType(MediaType.APPLICATION_JSON).content(like(2, 1)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].status").value("APPLIED"));
+        mockMvc.perform(get("/films/2"))
+                .andExpect(jsonPath("$.likesCount").value(0));
+    }
+
+    @Test
+    void filmRecommendationsComeFromUsersWithOverlappingLikes() throws Exception {
+        for (int i = 1; i <= 4; i++) {
+            createValidFilm(validTestFilm);
+        }
+        resetUsers();
+        for (int i = 1; i <= 4; i++) {
+            createUser("critic" + i);
+        }
+        addLikes("""
+                [
+                  {"filmId": 1, "userId": 1}, {"filmId": 2, "userId": 1},
+                  {"filmId": 1, "userId": 2}, {"filmId": 2, "userId": 2}, {"filmId": 3, "userId": 2},
+                  {"filmId": 1, "userId": 3}, {"filmId": 4, "userId": 3}
+                ]
+                """);
+        mockMvc.perform(get("/users/2/likes"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(3))
+                .andExpect(jsonPath("$[0].id").value(1))
+                .andExpect(jsonPath("$[2].id").value(3));
+        mockMvc.perform(get("/users/1/recommendations/films"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].id").value(3))
+                .andExpect(jsonPath("$[1].id").value(4));
+        mockMvc.perform(delete("/films/3/like/2"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/users/1/recommendations/films"))
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].id").value(4));
+        mockMvc.perform(get("/users/2/likes"))
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[1].id").value(2));
+        mockMvc.perform(get("/users/4/likes"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(0));
+        mockMvc.perform(get("/users/99/likes"))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(get("/users/4/recommendations/films"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(0));
+        mockMvc.perform(get("/users/99/recommendations/films"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void searchMatchesWordPrefixesInNameAndDescription() throws Exception {
+        importFilms("""
+                [
+                  {"name": "Ёжик в тумане", "description": "Мультфильм о дружбе", "releaseDate": "1975-01-01", "duration": 10},
+                  {"name": "Туманность Андромеды", "description": "Star travel", "releaseDate": "1967-01-01", "duration": 77},
+                  {"name": "Star Wars", "description": "Space opera", "releaseDate": "1977-05-25", "duration": 121},
+                  {"name": "Solaris", "description": "Ocean planet in the stars", "releaseDate": "1972-03-20", "duration": 166}
+                ]
+                """);
+        mockMvc.perform(get("/films/search").param("q", "туман"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].id").value(1))
+                .andExpect(jsonPath("$[1].id").value(2));
+        mockMvc.perform(get("/films/search").param("q", "ежик"))
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].id").value(1));
+        mockMvc.perform(get("/films/search").param("q", "STAR"))
+                .andExpect(jsonPath("$.length()").value(3))
+                .andExpect(jsonPath("$[0].id").value(3));
+        mockMvc.perform(get("/films/search").param("q", "star andromeda"))
+                .andExpect(jsonPath("$.length()").value(0));
+        mockMvc.perform(get("/films/search").param("q", "star андром"))
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].id").value(2));
+        updateFilm("""
+                {"id": 3, "name": "Empire", "description": "Space opera", "releaseDate": "1980-05-21", "duration": 124}
+                """);
+        mockMvc.perform(get("/films/search").param("q", "star"))
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].id").value(2));
+        mockMvc.perform(get("/films/search").param("q", " "))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void searchRanksByBestMatchOfEachWordAndIgnoresWordInteriors() throws Exception {
+        importFilms("""
+                [
+                  {"name": "Starship Stardust Starlight", "releaseDate": "1980-01-01", "duration": 90},
+                  {"name": "Star", "releaseDate": "1980-01-01", "duration": 90},
+                  {"name": "Moon", "description": "A lone star", "releaseDate": "1980-01-01", "duration": 90},
+                  {"name": "Сталкер", "description": "Зона", "releaseDate": "1979-05-25", "duration": 163}
+                ]
+                """);
+        mockMvc.perform(get("/films/search").param("q", "star"))
+                .andExpect(jsonPath("$.length()").value(3))
+                .andExpect(jsonPath("$[0].id").value(2))
+                .andExpect(jsonPath("$[1].id").value(1))
+                .andExpect(jsonPath("$[2].id").value(3));
+        mockMvc.perform(get("/films/search").param("q", "алкер"))
+                .andExpect(jsonPath("$.length()").value(0));
+        mockMvc.perform(get("/films/search").param("q", "tar"))
+                .andExpect(jsonPath("$.length()").value(0));
+        mockMvc.perform(get("/films/search").param("q", "сталк зон"))
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].id").value(4));
+    }
+
+    @Test
+    void shortPrefixFindsFilmsForEveryMatchingWord() throws Exception {
+        // у каждого фильма своё слово на «к»: префикс разворачивается во все 40, а не в первые слова словаря
+        importFilms(IntStream.range(0, 40)
+                .mapToObj(i -> "{\"name\": \"к%02d\", \"releaseDate\": \"1980-01-01\", \"duration\": 90}".formatted(i))
+                .collect(Collectors.joining(",", "[", "]")));
+        mockMvc.perform(get("/films/search").param("q", "к").param("count", "50"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(40))
+                .andExpect(jsonPath("$[39].id").value(40));
+    }
+
+    @Test
+    void filterByReleaseDateAndDurationRanges() throws Exception {
+        importFilms("""
+                [
+                  {"name": "Hedgehog", "releaseDate": "1975-01-01", "duration": 10},
+                  {"name": "Andromeda", "releaseDate": "1967-01-01", "duration": 77},
+                  {"name": "Star Wars", "releaseDate": "1977-05-25", "duration": 121},
+                  {"name": "Solaris", "releaseDate": "1972-03-20", "duration": 166},
+                  {"name": "Empire", "releaseDate": "1980-05-21", "duration": 124}
+                ]
+                """);
+        mockMvc.perform(get("/films/filter").param("releasedFrom", "1970-01-01").param("releasedTo", "1979-12-31"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(3))
+                .andExpect(jsonPath("$[0].id").value(4))
+                .andExpect(jsonPath("$[1].id").value(1))
+                .andExpect(jsonPath("$[2].id").value(3));
+        mockMvc.perform(get("/films/filter").param("minDuration", "100"))
+                .andExpect(jsonPath("$.length()").value(3))
+                .andExpect(jsonPath("$[0].id").value(3))
+                .andExpect(jsonPath("$[2].id").value(4));
+        mockMvc.perform(get("/films/filter").param("releasedFrom", "1970-01-01").param("minDuration", "100").param("count", "2"))
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].id").value(4))
+                .andExpect(jsonPath("$[1].id").value(3));
+
+        resetUsers();
+        createUser("viewer1");
+        createUser("viewer2");
+        addLikes("""
+                [{"filmId": 5, "userId": 1}, {"filmId": 5, "userId": 2}, {"filmId": 3, "userId": 1}]
+                """);
+        mockMvc.perform(get("/films/filter").param("releasedFrom", "1970-01-01").param("minDuration", "100").param("popular", "true"))
+                .andExpect(jsonPath("$.length()").value(3))
+                .andExpect(jsonPath("$[0].id").value(5))
+                .andExpect(jsonPath("$[1].id").value(3))
+                .andExpect(jsonPath("$[2].id").value(4));
+        updateFilm("""
+                {"id": 4, "name": "Solaris", "releaseDate": "1972-03-20", "duration": 90}
+                """);
+        mockMvc.perform(get("/films/filter").param("minDuration", "100"))
+                .andExpect(jsonPath("$.length()").value(2));
+
+        mockMvc.perform(get("/films/filter"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/films/filter").param("releasedFrom", "1980-01-01").param("releasedTo", "1970-01-01"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void importsFilmsFromJsonArrayAndNdjson() throws Exception {
+        String array = """
+                [
+                  {"name": "Первый", "releaseDate": "2000-01-01", "duration": 90},
+                  {"name": "Старый", "releaseDate": "1800-01-01", "duration": 90},
+                  {"name": ""},
+                  {"name": "Второй", "duration": "долго"},
+                  {"name": "Третий", "duration": 120}
+                ]
+                """;
+        mockMvc.perform(post("/films/import").contentType(MediaType.APPLICATION_JSON).content(array))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.received").value(5))
+                .andExpect(jsonPath("$.imported").value(2))
+                .andExpect(jsonPath("$.rejected").value(3))
+                .andExpect(jsonPath("$.completed").value(true))
+                .andExpect(jsonPath("$.errors[0].index").value(1))
+                .andExpect(jsonPath("$.errors[1].index").value(2))
+                .andExpect(jsonPath("$.errors[2].index").value(3));
+        String ndjson = "{\"name\": \"Четвёртый\"}\n{\"name\": \"Пятый\"}\n{\"name\": ";
+        mockMvc.perform(post("/films/import").contentType("application/x-ndjson").content(ndjson))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(2))
+                .andExpect(jsonPath("$.completed").value(false));
+        mockMvc.perform(get("/films"))
+                .andExpect(jsonPath("$.length()").value(4))
+                .andExpect(jsonPath("$[1].name").value("Третий"))
+                .andExpect(jsonPath("$[3].id").value(4));
+    }
+
 }
 
 // CHECKSTYLE:ON
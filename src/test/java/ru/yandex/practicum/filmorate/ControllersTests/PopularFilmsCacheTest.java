@@ -0,0 +1,217 @@
+package ru.yandex.practicum.filmorate.ControllersTests;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import ru.yandex.practicum.filmorate.controller.PopularFilmsCache;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmChangedEvent;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.storage.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.InMemoryLikeStorage;
+import ru.yandex.practicum.filmorate.storage.InMemoryUserStorage;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PopularFilmsCacheTest {
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private final InMemoryLikeStorage likes = new InMemoryLikeStorage();
+    private final InMemoryUserStorage users = new InMemoryUserStorage();
+    private final List<PopularFilmsCache> listeners = new ArrayList<>();
+    private final GatedFilmService service = new GatedFilmService(new InMemoryFilmStorage(likes), users, likes,
+            event -> listeners.forEach(cache -> cache.onFilmChanged((FilmChangedEvent) event)));
+    // пересчёты идут в отдельных потоках, как на applicationTaskExecutor
+    private final AtomicInteger refreshes = new AtomicInteger();
+    private final Executor executor = task -> {
+        refreshes.incrementAndGet();
+        Thread.ofPlatform().start(task);
+    };
+
+    @Test
+    void staleAnswerIsServedWithinWindowAndRefreshedInBackground() throws Exception {
+        PopularFilmsCache cache = cache(Duration.ofHours(1));
+        createFilms(3);
+        createUsers(2);
+        service.addLike(1L, 1L);
+        assertEquals(List.of(1L), ids(cache.get(1)));
+
+        service.hold();
+        service.addLike(2L, 1L);
+        service.addLike(2L, 2L);
+        // пересчёт запущен, но ещё не закончен: отдаётся прежний ответ, второй запрос нового пересчёта не начинает
+        assertEquals(List.of(1L), ids(cache.get(1)));
+        assertEquals(List.of(1L), ids(cache.get(1)));
+        assertEquals(2, refreshes.get());
+
+        service.release();
+        awaitAnswer(cache, 1, List.of(2L));
+        assertEquals(2, service.computes.get());
+    }
+
+    @Test
+    void likeOutsideCachedRangeKeepsAnswer() throws Exception {
+        PopularFilmsCache cache = cache(Duration.ZERO);
+        createFilms(4);
+        createUsers(3);
+        service.addLike(1L, 1L);
+        service.addLike(1L, 2L);
+        service.addLike(2L, 1L);
+        service.addLike(2L, 2L);
+        byte[] answer = cache.get(2);
+        assertEquals(List.of(1L, 2L), ids(answer));
+
+        // у третьего фильма лайков меньше, чем у последнего в ответе: ответ не пересчитывается
+        service.addLike(3L, 1L);
+        assertSame(answer, cache.get(2));
+        assertEquals(1, service.computes.get());
+
+        // сравнявшись с последним, он может его вытеснить
+        service.addLike(3L, 2L);
+        service.addLike(3L, 3L);
+        assertEquals(List.of(3L, 1L), ids(cache.get(2)));
+        assertEquals(2, service.computes.get());
+    }
+
+    @Test
+    void concurrentCallersShareOneRecompute() throws Exception {
+        PopularFilmsCache cache = cache(Duration.ZERO);
+        createFilms(3);
+        service.hold();
+
+        List<CompletableFuture<byte[]>> answers = new ArrayList<>();
+        List<Thread> callers = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            CompletableFuture<byte[]> answer = new CompletableFuture<>();
+            answers.add(answer);
+            callers.add(Thread.ofPlatform().start(() -> answer.complete(cache.get(3))));
+        }
+        awaitWaiting(callers);
+        service.release();
+
+        for (CompletableFuture<byte[]> answer : answers) {
+            assertEquals(List.of(1L, 2L, 3L), ids(answer.get()));
+        }
+        assertEquals(1, refreshes.get());
+        assertEquals(1, service.computes.get());
+    }
+
+    @Test
+    void refreshStartedBeforeLatestChangeIsNotJoinedAfterWindow() throws Exception {
+        PopularFilmsCache cache = cache(Duration.ofMillis(100));
+        createFilms(3);
+        createUsers(3);
+        service.addLike(1L, 1L);
+        assertEquals(List.of(1L), ids(cache.get(1)));
+
+        // первый пересчёт уже посчитал второй фильм лучшим и задержан до публикации
+        service.hold();
+        service.addLike(2L, 1L);
+        service.addLike(2L, 2L);
+        assertEquals(List.of(1L), ids(cache.get(1)));
+        service.reached.await();
+        service.addLike(3L, 1L);
+        service.addLike(3L, 2L);
+        service.addLike(3L, 3L);
+        Thread.sleep(150);
+
+        // окно истекло: запрос ждёт новый пересчёт, а не тот, что начат до лайков третьего фильма
+        CompletableFuture<byte[]> answer = new CompletableFuture<>();
+        Thread caller = Thread.ofPlatform().start(() -> answer.complete(cache.get(1)));
+        awaitWaiting(List.of(caller));
+        service.release();
+
+        assertEquals(List.of(3L), ids(answer.get()));
+        assertEquals(3, refreshes.get());
+    }
+
+    private PopularFilmsCache cache(Duration maxStaleness) {
+        PopularFilmsCache cache = new PopularFilmsCache(service, objectMapper, executor, maxStaleness, 100);
+        listeners.add(cache);
+        return cache;
+    }
+
+    private void createFilms(int count) {
+        for (int i = 1; i <= count; i++) {
+            Film film = new Film();
+            film.setName("Фильм " + i);
+            film.setDuration(90L);
+            service.create(film);
+        }
+    }
+
+    private void createUsers(int count) {
+        for (int i = 1; i <= count; i++) {
+            User user = new User();
+            user.setLogin("login" + i);
+            user.setEmail("mail" + i + "@mail.ru");
+            users.reserveCredentials(user.getEmail(), user.getLogin());
+            users.create(user);
+        }
+    }
+
+    private List<Long> ids(byte[] answer) throws IOException {
+        List<Long> ids = new ArrayList<>();
+        objectMapper.readTree(answer).forEach(film -> ids.add(film.get("id").asLong()));
+        return ids;
+    }
+
+    private void awaitAnswer(PopularFilmsCache cache, int count, List<Long> expected) throws Exception {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (!ids(cache.get(count)).equals(expected)) {
+            assertTrue(System.nanoTime() < deadline, "Ответ не обновился");
+            Thread.sleep(10);
+        }
+    }
+
+    private static void awaitWaiting(List<Thread> threads) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (!threads.stream().allMatch(thread -> thread.getState() == Thread.State.WAITING)) {
+            assertTrue(System.nanoTime() < deadline, "Запросы не дождались пересчёта");
+            Thread.sleep(10);
+        }
+    }
+
+    // считает пересчёты топа и может задержать их после расчёта, до публикации ответа
+    private static class GatedFilmService extends FilmService {
+        private final AtomicInteger computes = new AtomicInteger();
+        private volatile CountDownLatch reached = new CountDownLatch(0);
+        private volatile CountDownLatch gate = new CountDownLatch(0);
+
+        GatedFilmService(InMemoryFilmStorage films, InMemoryUserStorage users, InMemoryLikeStorage likes,
+                         ApplicationEventPublisher events) {
+            super(films, users, likes, events);
+        }
+
+        void hold() {
+            reached = new CountDownLatch(1);
+            gate = new CountDownLatch(1);
+        }
+
+        void release() {
+            gate.countDown();
+        }
+
+        @Override
+        public List<Film> getPopularFilms(int count) {
+            computes.incrementAndGet();
+            List<Film> films = super.getPopularFilms(count);
+            reached.countDown();
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return films;
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package ru.yandex.practicum.filmorate.ControllersTests;
+
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+// те же сценарии, что и в UserControllerTest, но поверх JDBC-хранилища
+@ActiveProfiles("db")
+@TestPropertySource(properties = "spring.datasource.url=jdbc:h2:mem:filmorate;DB_CLOSE_DELAY=-1")
+class UserControllerDbTest extends UserControllerTest {
+}
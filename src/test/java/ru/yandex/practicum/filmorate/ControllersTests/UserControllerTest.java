@@ -5,9 +5,9 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
-import ru.yandex.practicum.filmorate.service.UserService;
 
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
@@ -41,14 +41,10 @@ class UserControllerTest {
     @Autowired
     private MockMvc mockMvc;
 
-    @Autowired
-    private UserService userService;
-
 
     @BeforeEach
     public void clearData() throws Exception {
         mockMvc.perform(delete("/users/reset")).andExpect(status().isOk());
-        userService.clearCredentialsSets();
 
     }
 
@@ -110,6 +106,15 @@ class UserControllerTest {
                 }
                 """;
         createInvalidUserWithBadRequest(duplicateUserJson);
+        String sameEmailOtherCaseJson = """
+                {
+                  "login": "otherlogin",
+                  "email": "Mail@MAIL.ru",
+                  "name": "oleg",
+                  "birthday": "1999-01-01"
+                }
+                """;
+        createInvalidUserWithBadRequest(sameEmailOtherCaseJson);
     }
 
     @Test
@@ -297,6 +302,128 @@ class UserControllerTest {
         mockMvc.perform(put("/users").contentType(MediaType.APPLICATION_JSON).content(updatedFirstUser2)).andExpect(status().isInternalServerError());
     }
 
+    @Test
+    void friendsAndCommonFriends() throws Exception {
+        for (int i = 1; i <= 3; i++) {
+            createValidUser("""
+                    {
+                      "login": "friend%d",
+                      "email": "friend%d@mail.ru",
+                      "birthday": "1990-01-01"
+                    }
+                    """.formatted(i, i));
+        }
+        mockMvc.perform(put("/users/1/friends/3")).andExpect(status().isOk());
+        mockMvc.perform(put("/users/2/friends/3")).andExpect(status().isOk());
+        mockMvc.perform(put("/users/3/friends/1")).andExpect(status().isBadRequest());
+        mockMvc.perform(get("/users/3/friends")).andExpect(status().isOk()).andExpect(jsonPath("$.length()").value(2)).andExpect(jsonPath("$[0].id").value(1)).andExpect(jsonPath("$[1].id").value(2));
+        mockMvc.perform(get("/users/1/friends/common/2")).andExpect(status().isOk()).andExpect(jsonPath("$.length()").value(1)).andExpect(jsonPath("$[0].id").value(3));
+        mockMvc.perform(delete("/users/3/friends/1")).andExpect(status().isOk());
+        mockMvc.perform(get("/users/1/friends")).andExpect(status().isOk()).andExpect(jsonPath("$.length()").value(0));
+        mockMvc.perform(get("/users/3")).andExpect(jsonPath("$.friendIds.length()").value(1)).andExpect(jsonPath("$.friendIds[0]").value(2));
+    }
+
+    @Test
+    void conditionalGetFollowsUserAndFriendChanges() throws Exception {
+        for (int i = 1; i <= 2; i++) {
+            createValidUser("""
+                    {
+                      "login": "etag%d",
+                      "email": "etag%d@mail.ru",
+                      "birthday": "1990-01-01"
+                    }
+                    """.formatted(i, i));
+        }
+        mockMvc.perform(get("/users/99")).andExpect(status().isNotFound()).andExpect(header().doesNotExist(HttpHeaders.ETAG));
+        String userTag = mockMvc.perform(get("/users/1")).andExpect(status().isOk()).andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        String friendsTag = mockMvc.perform(get("/users/1/friends")).andExpect(status().isOk()).andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        mockMvc.perform(get("/users/1").header(HttpHeaders.IF_NONE_MATCH, userTag)).andExpect(status().isNotModified()).andExpect(content().string(""));
+        mockMvc.perform(get("/users/1/friends").header(HttpHeaders.IF_NONE_MATCH, "W/" + friendsTag)).andExpect(status().isNotModified());
+
+        mockMvc.perform(put("/users/2/friends/1")).andExpect(status().isOk());
+        mockMvc.perform(get("/users/1").header(HttpHeaders.IF_NONE_MATCH, userTag)).andExpect(status().isOk()).andExpect(jsonPath("$.friendIds[0]").value(2));
+        friendsTag = mockMvc.perform(get("/users/1/friends").header(HttpHeaders.IF_NONE_MATCH, friendsTag)).andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].login").value("etag2")).andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        // правка профиля друга меняет список друзей, хотя состав дружб прежний
+        String updatedFriend = """
+                {
+                  "id": 2,
+                  "login": "renamed",
+                  "email": "etag2@mail.ru",
+                  "birthday": "1990-01-01"
+                }
+                """;
+        mockMvc.perform(put("/users").contentType(MediaType.APPLICATION_JSON).content(updatedFriend)).andExpect(status().isOk());
+        mockMvc.perform(get("/users/1/friends").header(HttpHeaders.IF_NONE_MATCH, friendsTag)).andExpect(status().isOk()).andExpect(jsonPath("$[0].login").value("renamed"));
+
+        mockMvc.perform(delete("/users/reset")).andExpect(status().isOk());
+        mockMvc.perform(get("/users/1").header(HttpHeaders.IF_NONE_MATCH, userTag)).andExpect(status().isNotFound());
+    }
+
+    @Test
+    void friendRecommendationsRankedByMutualFriends() throws Exception {
+        for (int i = 1; i <= 5; i++) {
+            createValidUser("""
+                    {
+                      "login": "fof%d",
+                      "email": "fof%d@mail.ru",
+                      "birthday": "1990-01-01"
+                    }
+                    """.formatted(i, i));
+        }
+        mockMvc.perform(put("/users/1/friends/2")).andExpect(status().isOk());
+        mockMvc.perform(put("/users/1/friends/3")).andExpect(status().isOk());
+        mockMvc.perform(put("/users/2/friends/4")).andExpect(status().isOk());
+        mockMvc.perform(put("/users/3/friends/4")).andExpect(status().isOk());
+        mockMvc.perform(put("/users/3/friends/5")).andExpect(status().isOk());
+        mockMvc.perform(get("/users/1/recommendations/friends")).andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2)).andExpect(jsonPath("$[0].id").value(4)).andExpect(jsonPath("$[1].id").value(5));
+        mockMvc.perform(get("/users/1/recommendations/friends?count=1")).andExpect(jsonPath("$.length()").value(1));
+        mockMvc.perform(get("/users/4/recommendations/friends")).andExpect(jsonPath("$.length()").value(2)).andExpect(jsonPath("$[0].id").value(1));
+        mockMvc.perform(get("/users/1/recommendations/friends?count=0")).andExpect(status().isBadRequest());
+        mockMvc.perform(get("/users/99/recommendations/friends")).andExpect(status().isNotFound());
+    }
+
+    @Test
+    void batchFriendshipsReportPerPairResults() throws Exception {
+        for (int i = 1; i <= 3; i++) {
+            createValidUser("""
+                    {
+                      "login": "batch%d",
+                      "email": "batch%d@mail.ru",
+                      "birthday": "1990-01-01"
+                    }
+                    """.formatted(i, i));
+        }
+        String friendships = """
+                [
+                  {"userId": 1, "friendId": 2},
+                  {"userId": 2, "friendId": 1},
+                  {"userId": 1, "friendId": 3},
+                  {"userId": 1, "friendId": 1},
+                  {"userId": 1, "friendId": 42}
+                ]
+                """;
+        mockMvc.perform(put("/users/friends").contentType(MediaType.APPLICATION_JSON).content(friendships)).andExpect(status().isOk()).andExpect(jsonPath("$.length()").value(5)).andExpect(jsonPath("$[0].userId").value(1)).andExpect(jsonPath("$[0].friendId").value(2)).andExpect(jsonPath("$[0].status").value("APPLIED")).andExpect(jsonPath("$[1].status").value("UNCHANGED")).andExpect(jsonPath("$[2].status").value("APPLIED")).andExpect(jsonPath("$[3].status").value("INVALID")).andExpect(jsonPath("$[4].status").value("NOT_FOUND"));
+        mockMvc.perform(get("/users/1/friends")).andExpect(jsonPath("$.length()").value(2));
+        mockMvc.perform(delete("/users/friends").contentType(MediaType.APPLICATION_JSON).content("[{\"userId\": 3, \"friendId\": 1}]")).andExpect(status().isOk()).andExpect(jsonPath("$[0].status").value("APPLIED"));
+        mockMvc.perform(get("/users/1")).andExpect(jsonPath("$.friendIds.length()").value(1)).andExpect(jsonPath("$.friendIds[0]").value(2));
+    }
+
+    @Test
+    void importsUsersRejectingInvalidAndDuplicates() throws Exception {
+        String ndjson = """
+                {"login": "imported1", "email": "imported1@mail.ru", "birthday": "1990-01-01"}
+                {"login": "imported2", "email": "imported1@mail.ru"}
+                {"login": "bad login", "email": "bad@mail.ru"}
+                {"login": "imported3", "email": "not-an-email"}
+                {"login": "imported4", "email": "imported4@mail.ru"}
+                """;
+        mockMvc.perform(post("/users/import").contentType("application/x-ndjson").content(ndjson)).andExpect(status().isOk()).andExpect(jsonPath("$.received").value(5)).andExpect(jsonPath("$.imported").value(2)).andExpect(jsonPath("$.rejected").value(3)).andExpect(jsonPath("$.errors[0].index").value(1)).andExpect(jsonPath("$.errors[0].message").value("Этот имейл уже используется!"));
+        mockMvc.perform(get("/users")).andExpect(jsonPath("$.length()").value(2)).andExpect(jsonPath("$[1].login").value("imported4")).andExpect(jsonPath("$[1].name").value("imported4"));
+    }
+
 }
 
 // CHECKSTYLE:ON
@@ -0,0 +1,146 @@
+package ru.yandex.practicum.filmorate.StorageTests;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.storage.CachingFilmStorage;
+import ru.yandex.practicum.filmorate.storage.CachingLikeStorage;
+import ru.yandex.practicum.filmorate.storage.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.InMemoryLikeStorage;
+import ru.yandex.practicum.filmorate.storage.InMemoryUserStorage;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CachingStorageTest {
+    private final InMemoryLikeStorage likes = new InMemoryLikeStorage();
+    private final CountingFilmStorage store = new CountingFilmStorage(likes);
+    private final CachingFilmStorage films = new CachingFilmStorage(store, Caffeine.newBuilder().<Long, Film>build());
+    private final CachingLikeStorage cachingLikes = new CachingLikeStorage(likes, films);
+    private final InMemoryUserStorage users = new InMemoryUserStorage();
+    private final FilmService service = new FilmService(films, users, cachingLikes, event -> {
+    });
+
+    @Test
+    void repeatedReadsHitTheCacheUntilUpdateLikeOrDelete() {
+        long id = service.create(film("Ironweed")).getId();
+        User user = new User();
+        user.setLogin("fan");
+        user.setEmail("fan@mail.ru");
+        users.reserveCredentials(user.getEmail(), user.getLogin());
+        long userId = users.create(user).getId();
+
+        // созданный фильм сразу кладётся в кэш
+        service.findById(id);
+        service.findById(id);
+        assertEquals(0, store.reads.get());
+
+        service.update(film(id, "Ironweed 2"));
+        assertEquals("Ironweed 2", service.findById(id).getName());
+        assertEquals(1, store.reads.get());
+
+        service.addLike(id, userId);
+        assertEquals(1, service.findById(id).getLikesCount());
+        assertEquals(2, store.reads.get());
+        service.findById(id);
+        assertEquals(2, store.reads.get());
+
+        service.deleteAll();
+        assertTrue(films.findById(id).isEmpty());
+    }
+
+    @Test
+    void failedUpdateLeavesCachedFilmUntouched() {
+        long id = service.create(film("Ironweed")).getId();
+        Film cached = service.findById(id);
+        store.failUpdates.set(true);
+
+        assertThrows(IllegalStateException.class, () -> service.update(film(id, "Renamed")));
+        assertSame(cached, service.findById(id));
+        assertEquals("Ironweed", cached.getName());
+        assertEquals("Ironweed", store.findById(id).orElseThrow().getName());
+    }
+
+    @Test
+    void bulkReadRacingWithUpdateDoesNotCacheStaleFilm() throws Exception {
+        long id = service.create(film("Ironweed")).getId();
+        films.invalidate(id);
+        store.pauseBulkReads();
+
+        Thread reader = Thread.ofVirtual().start(() -> films.findAllById(new long[]{id}));
+        // пакетное чтение уже прочитало старую версию, но ещё не положило её в кэш
+        store.bulkReadDone.await();
+        service.update(film(id, "Ironweed 2"));
+        store.resumeBulkReads.countDown();
+        reader.join();
+
+        assertEquals("Ironweed 2", films.findById(id).orElseThrow().getName());
+        assertEquals("Ironweed 2", films.findAllById(new long[]{id}).getFirst().getName());
+    }
+
+    private static Film film(String name) {
+        Film film = new Film();
+        film.setName(name);
+        film.setDescription("wow very nice");
+        film.setDuration(100L);
+        return film;
+    }
+
+    private static Film film(long id, String name) {
+        Film film = film(name);
+        film.setId(id);
+        return film;
+    }
+
+    // считает чтения, дошедшие мимо кэша, умеет отказывать в записи и придерживать пакетное чтение
+    private static class CountingFilmStorage extends InMemoryFilmStorage {
+        private final AtomicInteger reads = new AtomicInteger();
+        private final AtomicBoolean failUpdates = new AtomicBoolean();
+        private final CountDownLatch bulkReadDone = new CountDownLatch(1);
+        private final CountDownLatch resumeBulkReads = new CountDownLatch(1);
+        private volatile boolean pauseBulkReads;
+
+        CountingFilmStorage(InMemoryLikeStorage likes) {
+            super(likes);
+        }
+
+        @Override
+        public Optional<Film> findById(Long id) {
+            reads.incrementAndGet();
+            return super.findById(id);
+        }
+
+        @Override
+        public List<Film> findAllById(long[] ids) {
+            List<Film> found = super.findAllById(ids);
+            if (pauseBulkReads) {
+                bulkReadDone.countDown();
+                try {
+                    resumeBulkReads.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return found;
+        }
+
+        void pauseBulkReads() {
+            pauseBulkReads = true;
+        }
+
+        @Override
+        public Film update(Film film) {
+            if (failUpdates.get()) {
+                throw new IllegalStateException("Хранилище недоступно");
+            }
+            return super.update(film);
+        }
+    }
+}
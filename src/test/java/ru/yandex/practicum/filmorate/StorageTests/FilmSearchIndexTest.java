@@ -0,0 +1,64 @@
+package ru.yandex.practicum.filmorate.StorageTests;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.FilmSearchIndex;
+
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class FilmSearchIndexTest {
+    private final FilmSearchIndex index = new FilmSearchIndex();
+
+    @Test
+    void queryWordScoresItsBestMatchNotTheSumOfExpansions() {
+        index.index(film(1, "Starship Stardust Starlight", null));
+        index.index(film(2, "Star", null));
+        index.index(film(3, "Moon", "star"));
+
+        assertArrayEquals(new long[]{2, 1, 3}, index.search("star", 10));
+        assertArrayEquals(new long[]{2}, index.search("star", 1));
+    }
+
+    @Test
+    void forgottenWordsDoNotCrowdOutPrefixExpansions() {
+        String words = IntStream.range(0, 40).mapToObj(i -> "w%02d".formatted(i)).collect(Collectors.joining(" "));
+        index.index(film(1, words, null));
+        index.index(film(1, "Renamed", null));
+        index.index(film(2, "Wanted", null));
+
+        assertArrayEquals(new long[]{2}, index.search("w", 10));
+        assertArrayEquals(new long[]{}, index.search("w05", 10));
+
+        index.index(film(3, "w05", null));
+        assertArrayEquals(new long[]{3}, index.search("w05", 10));
+    }
+
+    @Test
+    void prefixMatchesEveryDictionaryWordAndKeepsRanking() {
+        for (int i = 1; i <= 100; i++) {
+            index.index(film(i, "к%03d".formatted(i), null));
+        }
+        index.index(film(101, "Moon", "к"));
+        index.index(film(102, "к", null));
+
+        long[] found = index.search("к", 200);
+        assertEquals(102, found.length);
+        assertEquals(102, found[0]);
+        assertEquals(1, found[1]);
+        assertEquals(100, found[100]);
+        assertEquals(101, found[101]);
+        assertArrayEquals(new long[]{100}, index.search("к100", 10));
+    }
+
+    private static Film film(long id, String name, String description) {
+        Film film = new Film();
+        film.setId(id);
+        film.setName(name);
+        film.setDescription(description);
+        return film;
+    }
+}
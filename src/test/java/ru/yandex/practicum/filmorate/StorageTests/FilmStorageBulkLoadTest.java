@@ -0,0 +1,77 @@
+package ru.yandex.practicum.filmorate.StorageTests;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.InMemoryLikeStorage;
+import ru.yandex.practicum.filmorate.storage.JdbcFilmStorage;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Бенчмарки хранилищ сравнивают реализации на одних и тех же операциях: пакетная загрузка,
+// поиск по ID и создание после неё должны вести себя одинаково в памяти и в БД
+class FilmStorageBulkLoadTest {
+    private static final int FILMS = 2500;
+    private static final int BATCH = 1000;
+
+    @ParameterizedTest
+    @ValueSource(strings = {"memory", "jdbc"})
+    void batchedLoadAssignsSequentialIdsAndCreateContinuesThem(String storage) {
+        FilmStorage films = newStorage(storage);
+        List<Film> batch = new ArrayList<>(BATCH);
+        for (int n = 0; n < FILMS; n++) {
+            batch.add(film(n));
+            if (batch.size() == BATCH) {
+                films.createAll(batch);
+                batch = new ArrayList<>(BATCH);
+            }
+        }
+        films.createAll(batch);
+
+        assertEquals(FILMS, films.count());
+        for (long id : new long[]{1, BATCH, BATCH + 1, FILMS}) {
+            Film found = films.findById(id).orElseThrow();
+            assertEquals("Film " + (id - 1), found.getName());
+            assertEquals(60 + (id - 1) % 120, found.getDuration());
+        }
+        assertTrue(films.findById(FILMS + 1L).isEmpty());
+
+        Film created = films.create(film(FILMS));
+        assertEquals(FILMS + 1L, created.getId());
+        assertEquals(Set.of(2L, FILMS + 1L), films.findAllById(new long[]{FILMS + 1L, 2}).stream()
+                .map(Film::getId).collect(Collectors.toSet()));
+    }
+
+    private static FilmStorage newStorage(String storage) {
+        if ("memory".equals(storage)) {
+            return new InMemoryFilmStorage(new InMemoryLikeStorage());
+        }
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+        return new JdbcFilmStorage(new NamedParameterJdbcTemplate(dataSource));
+    }
+
+    private static Film film(long n) {
+        Film film = new Film();
+        film.setName("Film " + n);
+        film.setDescription("Description of film " + n);
+        film.setReleaseDate(LocalDate.of(1900, 1, 1).plusDays(n));
+        film.setDuration(60 + n % 120);
+        return film;
+    }
+}
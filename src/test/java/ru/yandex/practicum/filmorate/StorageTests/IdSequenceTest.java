@@ -0,0 +1,81 @@
+package ru.yandex.practicum.filmorate.StorageTests;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.storage.IdSequence;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IdSequenceTest {
+    private static final int THREADS = 8;
+    private static final int IDS_PER_THREAD = 10_000;
+
+    @Test
+    void nextContinuesFromMaxExistingIdAndReseedsAfterReset() {
+        AtomicLong maxExisting = new AtomicLong(41);
+        IdSequence sequence = new IdSequence(maxExisting::get);
+        assertEquals(42, sequence.next());
+        assertEquals(43, sequence.next());
+
+        maxExisting.set(0);
+        sequence.reset();
+        assertEquals(1, sequence.next());
+        assertEquals(2, sequence.next());
+    }
+
+    @Test
+    void concurrentNextReturnsDistinctPositiveIdsAcrossResets() throws Exception {
+        IdSequence sequence = new IdSequence(() -> 0);
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        AtomicBoolean duplicate = new AtomicBoolean();
+        AtomicBoolean nonPositive = new AtomicBoolean();
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread resetter = new Thread(() -> {
+            while (running.get()) {
+                sequence.reset();
+            }
+        });
+        resetter.start();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        for (int t = 0; t < THREADS; t++) {
+            executor.execute(() -> {
+                for (int i = 0; i < IDS_PER_THREAD; i++) {
+                    if (sequence.next() <= 0) {
+                        nonPositive.set(true);
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+        running.set(false);
+        resetter.join();
+        assertFalse(nonPositive.get(), "выдан ID меньше 1");
+
+        // без сброса все ID различны
+        sequence.reset();
+        ExecutorService second = Executors.newFixedThreadPool(THREADS);
+        for (int t = 0; t < THREADS; t++) {
+            second.execute(() -> {
+                for (int i = 0; i < IDS_PER_THREAD; i++) {
+                    if (!ids.add(sequence.next())) {
+                        duplicate.set(true);
+                    }
+                }
+            });
+        }
+        second.shutdown();
+        assertTrue(second.awaitTermination(30, TimeUnit.SECONDS));
+        assertFalse(duplicate.get(), "ID выдан дважды");
+        assertEquals(THREADS * IDS_PER_THREAD, ids.size());
+    }
+}
@@ -0,0 +1,90 @@
+package ru.yandex.practicum.filmorate.StorageTests;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.InMemoryLikeStorage;
+import ru.yandex.practicum.filmorate.storage.InMemoryUserStorage;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongConsumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InMemoryStorageConcurrencyTest {
+    private static final int THREADS = 8;
+    private static final int USERS = 2000;
+
+    @Test
+    void concurrentLikesAreNotLost() throws Exception {
+        InMemoryLikeStorage likes = new InMemoryLikeStorage();
+        InMemoryFilmStorage films = new InMemoryFilmStorage(likes);
+        Film film = new Film();
+        film.setName("Ironweed");
+        films.create(film);
+
+        runConcurrently(userId -> {
+            likes.addLike(film.getId(), userId);
+            likes.addLike(film.getId(), userId);
+        });
+
+        assertEquals(USERS, films.findById(film.getId()).orElseThrow().getLikesCount());
+        assertEquals(USERS, films.findById(film.getId()).orElseThrow().getLikedUserIds().size());
+        assertEquals(film.getId(), likes.findPopularFilmIds(1).getFirst());
+    }
+
+    @Test
+    void concurrentFriendshipsStaySymmetric() throws Exception {
+        InMemoryUserStorage users = new InMemoryUserStorage();
+        for (int i = 0; i <= USERS; i++) {
+            User user = new User();
+            user.setLogin("login" + i);
+            user.setEmail("mail" + i + "@mail.ru");
+            users.create(user);
+        }
+
+        runConcurrently(userId -> {
+            users.addFriend(1L, userId + 1);
+            users.removeFriend(userId + 1, 1L);
+            users.addFriend(userId + 1, 1L);
+        });
+
+        assertEquals(USERS, users.findById(1L).orElseThrow().getFriendIds().size());
+        for (long id = 2; id <= USERS + 1; id++) {
+            assertTrue(users.findById(id).orElseThrow().getFriendIds().contains(1L));
+        }
+    }
+
+    @Test
+    void concurrentRegistrationsReserveEmailOnce() throws Exception {
+        InMemoryUserStorage users = new InMemoryUserStorage();
+        AtomicInteger reserved = new AtomicInteger();
+
+        runConcurrently(userId -> {
+            try {
+                users.reserveCredentials(userId % 2 == 0 ? "same@mail.ru" : "SAME@mail.ru", "login" + userId);
+                reserved.incrementAndGet();
+            } catch (ValidationException e) {
+                // имейл уже занят другим потоком
+            }
+        });
+
+        assertEquals(1, reserved.get());
+    }
+
+    private void runConcurrently(LongConsumer action) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        for (long userId = 1; userId <= USERS; userId++) {
+            long id = userId;
+            executor.submit(() -> action.accept(id));
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+    }
+}
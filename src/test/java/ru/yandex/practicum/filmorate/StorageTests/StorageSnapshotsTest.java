@@ -0,0 +1,310 @@
+package ru.yandex.practicum.filmorate.StorageTests;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.FileStorageJournal;
+import ru.yandex.practicum.filmorate.storage.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.InMemoryLikeStorage;
+import ru.yandex.practicum.filmorate.storage.InMemoryUserStorage;
+import ru.yandex.practicum.filmorate.storage.StorageSnapshots;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StorageSnapshotsTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void snapshotRestoresEntitiesLikesAndFriends() {
+        Path file = dir.resolve("snapshot.bin");
+        InMemoryLikeStorage likes = new InMemoryLikeStorage();
+        InMemoryFilmStorage films = new InMemoryFilmStorage(likes);
+        InMemoryUserStorage users = new InMemoryUserStorage();
+        fill(films, users, likes);
+        new StorageSnapshots(films, users, likes, Optional.empty(), file).write();
+
+        InMemoryLikeStorage restoredLikes = new InMemoryLikeStorage();
+        InMemoryFilmStorage restoredFilms = new InMemoryFilmStorage(restoredLikes);
+        InMemoryUserStorage restoredUsers = new InMemoryUserStorage();
+        new StorageSnapshots(restoredFilms, restoredUsers, restoredLikes, Optional.empty(), file)
+                .afterSingletonsInstantiated();
+
+        // занятые имейлы и логины восстанавливаются вместе с пользователями
+        assertThrows(ValidationException.class, () -> restoredUsers.reserveCredentials("MAIL1@mail.ru", "free"));
+        assertEquals(3, restoredUsers.count());
+        assertEquals(users.findAll(), restoredUsers.findAll());
+        assertArrayEquals(new long[]{2, 3}, restoredUsers.findById(1L).orElseThrow().getFriendIds().toArray());
+        assertEquals(films.findAll(), restoredFilms.findAll());
+        assertEquals(2, restoredFilms.findById(2L).orElseThrow().getLikesCount());
+        assertEquals(List.of(2L, 1L), restoredLikes.findPopularFilmIds(2));
+        assertArrayEquals(new long[]{1}, restoredLikes.findLikedFilmIds(2L));
+
+        User created = new User();
+        created.setLogin("after");
+        created.setEmail("after@mail.ru");
+        assertEquals(4, restoredUsers.create(created).getId());
+        assertEquals(3, restoredLikes.addLike(2L, 2L).count());
+    }
+
+    @Test
+    void corruptedSnapshotIsRejected() throws IOException {
+        Path file = dir.resolve("snapshot.bin");
+        InMemoryLikeStorage likes = new InMemoryLikeStorage();
+        InMemoryFilmStorage films = new InMemoryFilmStorage(likes);
+        Film film = new Film();
+        film.setName("Сталкер");
+        films.create(film);
+        new StorageSnapshots(films, new InMemoryUserStorage(), likes, Optional.empty(), file).write();
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[12] ^= 1;
+        Files.write(file, bytes);
+
+        InMemoryLikeStorage restoredLikes = new InMemoryLikeStorage();
+        StorageSnapshots snapshots = new StorageSnapshots(new InMemoryFilmStorage(restoredLikes),
+                new InMemoryUserStorage(), restoredLikes, Optional.empty(), file);
+        assertThrows(IllegalStateException.class, snapshots::restore);
+        assertFalse(new StorageSnapshots(films, new InMemoryUserStorage(), likes, Optional.empty(),
+                dir.resolve("missing.bin")).restore());
+    }
+
+    @Test
+    void journalReplaysChangesMadeAfterSnapshot() throws Exception {
+        Path file = dir.resolve("snapshot.bin");
+        Path journalDir = dir.resolve("journal");
+        InMemoryLikeStorage likes = new InMemoryLikeStorage();
+        InMemoryFilmStorage films = new InMemoryFilmStorage(likes);
+        InMemoryUserStorage users = new InMemoryUserStorage();
+        FileStorageJournal journal = newJournal(journalDir);
+        StorageSnapshots snapshots = new StorageSnapshots(films, users, likes, Optional.of(journal), file);
+        snapshots.afterSingletonsInstantiated();
+
+        fill(films, users, likes);
+        snapshots.write();
+        Film added = new Film();
+        added.setName("После снимка");
+        films.create(added);
+        likes.addLike(3L, 3L);
+        likes.removeLike(2L, 1L);
+        users.removeFriend(2L, 1L);
+        User renamed = users.findById(3L).orElseThrow();
+        renamed.setName("Новое имя");
+        users.update(renamed);
+        // сбой без финального снимка, с оборванной последней записью
+        journal.close();
+        try (Stream<Path> segments = Files.list(journalDir)) {
+            Path last = segments.sorted().toList().getLast();
+            Files.write(last, new byte[]{0, 0, 0, 42, 3}, StandardOpenOption.APPEND);
+        }
+
+        InMemoryLikeStorage restoredLikes = new InMemoryLikeStorage();
+        InMemoryFilmStorage restoredFilms = new InMemoryFilmStorage(restoredLikes);
+        InMemoryUserStorage restoredUsers = new InMemoryUserStorage();
+        FileStorageJournal restoredJournal = newJournal(journalDir);
+        new StorageSnapshots(restoredFilms, restoredUsers, restoredLikes, Optional.of(restoredJournal), file)
+                .afterSingletonsInstantiated();
+
+        assertEquals(films.findAll(), restoredFilms.findAll());
+        assertEquals(users.findAll(), restoredUsers.findAll());
+        assertEquals("Новое имя", restoredUsers.findById(3L).orElseThrow().getName());
+        assertArrayEquals(new long[]{3}, restoredUsers.findById(1L).orElseThrow().getFriendIds().toArray());
+        assertArrayEquals(new long[]{3}, restoredFilms.findById(2L).orElseThrow().getLikedUserIds().toArray());
+        assertEquals(List.of(1L, 2L, 3L), restoredLikes.findPopularFilmIds(3));
+
+        Film next = new Film();
+        next.setName("После восстановления");
+        assertEquals(4, restoredFilms.create(next).getId());
+        restoredJournal.close();
+    }
+
+    @Test
+    void rotateWaitsForInsertLoggedButNotYetPublished() throws Exception {
+        FileStorageJournal journal = newJournal(dir.resolve("journal"));
+        journal.open();
+        Semaphore logged = new Semaphore(0);
+        Semaphore publish = new Semaphore(0);
+        AtomicBoolean published = new AtomicBoolean();
+        Film film = new Film();
+        film.setId(1L);
+        film.setName("Сталкер");
+        Thread inserter = Thread.ofPlatform().start(() -> journal.appendAndPublish(() -> {
+            long sequence = journal.putFilm(film);
+            logged.release();
+            return sequence;
+        }, () -> {
+            publish.acquireUninterruptibly();
+            published.set(true);
+        }));
+        assertTrue(logged.tryAcquire(5, TimeUnit.SECONDS));
+
+        CompletableFuture<Long> rotated = CompletableFuture.supplyAsync(journal::rotate);
+        assertThrows(TimeoutException.class, () -> rotated.get(200, TimeUnit.MILLISECONDS));
+        publish.release();
+        assertEquals(1, rotated.get(5, TimeUnit.SECONDS));
+        assertTrue(published.get());
+        inserter.join();
+        journal.close();
+    }
+
+    @Test
+    void entitiesCreatedWhileSnapshotIsWrittenSurviveRestart() throws Exception {
+        Path file = dir.resolve("snapshot.bin");
+        Path journalDir = dir.resolve("journal");
+        InMemoryLikeStorage likes = new InMemoryLikeStorage();
+        InMemoryFilmStorage films = new InMemoryFilmStorage(likes);
+        InMemoryUserStorage users = new InMemoryUserStorage();
+        FileStorageJournal journal = newJournal(journalDir);
+        StorageSnapshots snapshots = new StorageSnapshots(films, users, likes, Optional.of(journal), file);
+        snapshots.afterSingletonsInstantiated();
+
+        ExecutorService creators = Executors.newFixedThreadPool(4);
+        for (int t = 0; t < 4; t++) {
+            int thread = t;
+            creators.execute(() -> {
+                for (int i = 0; i < 250; i++) {
+                    Film film = new Film();
+                    film.setName("Фильм " + thread + "-" + i);
+                    films.create(film);
+                    User user = new User();
+                    user.setLogin("login" + thread + "-" + i);
+                    user.setEmail("mail" + thread + "-" + i + "@mail.ru");
+                    users.create(user);
+                }
+            });
+        }
+        creators.shutdown();
+        int written = 0;
+        while (!creators.awaitTermination(1, TimeUnit.MILLISECONDS)) {
+            snapshots.write();
+            written++;
+        }
+        assertTrue(written > 0);
+        journal.close();
+
+        InMemoryLikeStorage restoredLikes = new InMemoryLikeStorage();
+        InMemoryFilmStorage restoredFilms = new InMemoryFilmStorage(restoredLikes);
+        InMemoryUserStorage restoredUsers = new InMemoryUserStorage();
+        FileStorageJournal restoredJournal = newJournal(journalDir);
+        new StorageSnapshots(restoredFilms, restoredUsers, restoredLikes, Optional.of(restoredJournal), file)
+                .afterSingletonsInstantiated();
+
+        assertEquals(1000, restoredFilms.count());
+        assertEquals(films.findAll(), restoredFilms.findAll());
+        assertEquals(1000, restoredUsers.count());
+        assertEquals(users.findAll(), restoredUsers.findAll());
+        restoredJournal.close();
+    }
+
+    @Test
+    void concurrentUpdatesOfOneFilmReplayToTheServedVersion() throws Exception {
+        Path file = dir.resolve("snapshot.bin");
+        Path journalDir = dir.resolve("journal");
+        InMemoryLikeStorage likes = new InMemoryLikeStorage();
+        InMemoryFilmStorage films = new InMemoryFilmStorage(likes);
+        PausingJournal journal = new PausingJournal(journalDir, "Первая правка");
+        new StorageSnapshots(films, new InMemoryUserStorage(), likes, Optional.of(journal), file)
+                .afterSingletonsInstantiated();
+        Film film = new Film();
+        film.setName("Сталкер");
+        long id = films.create(film).getId();
+
+        // первая правка задерживается на записи в журнал, вторая тем временем пытается её обогнать
+        Thread first = Thread.ofPlatform().start(() -> films.update(renamed(id, "Первая правка")));
+        assertTrue(journal.paused.tryAcquire(5, TimeUnit.SECONDS));
+        Thread second = Thread.ofPlatform().start(() -> films.update(renamed(id, "Вторая правка")));
+        second.join(200);
+        journal.resume.release();
+        first.join();
+        second.join();
+        String served = films.findById(id).orElseThrow().getName();
+        journal.close();
+
+        InMemoryLikeStorage restoredLikes = new InMemoryLikeStorage();
+        InMemoryFilmStorage restoredFilms = new InMemoryFilmStorage(restoredLikes);
+        FileStorageJournal restoredJournal = newJournal(journalDir);
+        new StorageSnapshots(restoredFilms, new InMemoryUserStorage(), restoredLikes, Optional.of(restoredJournal), file)
+                .afterSingletonsInstantiated();
+
+        assertEquals("Вторая правка", served);
+        assertEquals(served, restoredFilms.findById(id).orElseThrow().getName());
+        restoredJournal.close();
+    }
+
+    private static FileStorageJournal newJournal(Path directory) {
+        return new FileStorageJournal(directory, FileStorageJournal.FsyncPolicy.ALWAYS, Duration.ofMillis(50),
+                DataSize.ofMegabytes(64));
+    }
+
+    private static Film renamed(long id, String name) {
+        Film film = new Film();
+        film.setId(id);
+        film.setName(name);
+        return film;
+    }
+
+    private static void fill(InMemoryFilmStorage films, InMemoryUserStorage users, InMemoryLikeStorage likes) {
+        for (int i = 1; i <= 3; i++) {
+            User user = new User();
+            user.setLogin("login" + i);
+            user.setEmail("mail" + i + "@mail.ru");
+            user.setName(i == 2 ? null : "Имя " + i);
+            user.setBirthday(i == 3 ? null : LocalDate.of(1990, 1, i));
+            users.create(user);
+        }
+        users.addFriend(1L, 2L);
+        users.addFriend(1L, 3L);
+        Film film = new Film();
+        film.setName("Сталкер");
+        film.setDescription("x".repeat(200));
+        film.setReleaseDate(LocalDate.of(1979, 5, 25));
+        film.setDuration(163L);
+        films.create(film);
+        Film other = new Film();
+        other.setName("Без описания");
+        films.create(other);
+        likes.addLike(2L, 1L);
+        likes.addLike(2L, 3L);
+        likes.addLike(1L, 2L);
+    }
+
+    // придерживает запись в журнал фильма с заданным названием, пока тест её не отпустит
+    private static class PausingJournal extends FileStorageJournal {
+        private final String pausedName;
+        private final Semaphore paused = new Semaphore(0);
+        private final Semaphore resume = new Semaphore(0);
+
+        PausingJournal(Path directory, String pausedName) {
+            super(directory, FsyncPolicy.ALWAYS, Duration.ofMillis(50), DataSize.ofMegabytes(64));
+            this.pausedName = pausedName;
+        }
+
+        @Override
+        public long putFilm(Film film) {
+            if (pausedName.equals(film.getName())) {
+                paused.release();
+                resume.acquireUninterruptibly();
+            }
+            return super.putFilm(film);
+        }
+    }
+}
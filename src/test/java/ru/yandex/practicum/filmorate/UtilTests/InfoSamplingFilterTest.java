@@ -0,0 +1,43 @@
+package ru.yandex.practicum.filmorate.UtilTests;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.core.spi.FilterReply;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.logging.InfoSamplingFilter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InfoSamplingFilterTest {
+    private final LoggerContext context = new LoggerContext();
+    private final Logger controller = context.getLogger("ru.yandex.practicum.filmorate.controller.FilmController");
+    private final Logger storage = context.getLogger("ru.yandex.practicum.filmorate.storage.StorageSnapshots");
+
+    @Test
+    void samplesOnlyInfoOfSelectedLoggers() {
+        InfoSamplingFilter filter = new InfoSamplingFilter();
+        filter.setLoggers(" ru.yandex.practicum.filmorate.controller , ru.yandex.practicum.filmorate.service");
+        filter.setRate(0);
+
+        assertEquals(FilterReply.DENY, filter.decide(null, controller, Level.INFO, "запрос", null, null));
+        assertEquals(FilterReply.NEUTRAL, filter.decide(null, controller, Level.WARN, "запрос", null, null));
+        assertEquals(FilterReply.NEUTRAL, filter.decide(null, controller, Level.ERROR, "запрос", null, null));
+        assertEquals(FilterReply.NEUTRAL, filter.decide(null, storage, Level.INFO, "снимок", null, null));
+
+        filter.setRate(0.5);
+        int passed = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (filter.decide(null, controller, Level.INFO, "запрос", null, null) == FilterReply.NEUTRAL) {
+                passed++;
+            }
+        }
+        assertTrue(passed > 4000 && passed < 6000, "пропущено " + passed);
+
+        filter.setRate(1);
+        assertEquals(FilterReply.NEUTRAL, filter.decide(null, controller, Level.INFO, "запрос", null, null));
+        assertThrows(IllegalArgumentException.class, () -> filter.setRate(1.5));
+    }
+}
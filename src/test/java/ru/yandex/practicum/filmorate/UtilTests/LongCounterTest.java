@@ -0,0 +1,38 @@
+package ru.yandex.practicum.filmorate.UtilTests;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.util.LongCounter;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LongCounterTest {
+
+    @Test
+    void topMatchesFullSortAcrossGrowth() {
+        Random random = new Random(7);
+        LongCounter counter = new LongCounter(1);
+        Map<Long, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 50_000; i++) {
+            long key = random.nextInt(5000) - 100;
+            counter.increment(key);
+            expected.merge(key, 1, Integer::sum);
+        }
+        assertEquals(expected.size(), counter.size());
+        assertEquals(expected.get(0L), counter.get(0));
+
+        for (int limit : new int[]{0, 1, 10, 10_000}) {
+            long[] top = expected.entrySet().stream()
+                    .filter(entry -> entry.getKey() % 3 != 0)
+                    .sorted(Map.Entry.<Long, Integer>comparingByValue().reversed()
+                            .thenComparing(Map.Entry.comparingByKey(Comparator.naturalOrder())))
+                    .limit(limit).mapToLong(Map.Entry::getKey).toArray();
+            assertArrayEquals(top, counter.top(limit, key -> key % 3 == 0));
+        }
+    }
+}
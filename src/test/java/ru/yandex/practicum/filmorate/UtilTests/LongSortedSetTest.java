@@ -0,0 +1,142 @@
+package ru.yandex.practicum.filmorate.UtilTests;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.util.LongSortedSet;
+
+import com.sun.management.ThreadMXBean;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LongSortedSetTest {
+
+    @Test
+    void keepsValuesSortedAndUnique() {
+        LongSortedSet set = new LongSortedSet();
+        assertTrue(set.add(5));
+        assertTrue(set.add(1));
+        assertTrue(set.add(3));
+        assertFalse(set.add(3));
+        assertArrayEquals(new long[]{1, 3, 5}, set.toArray());
+        assertTrue(set.remove(3));
+        assertFalse(set.remove(3));
+        assertArrayEquals(new long[]{1, 5}, set.toArray());
+        assertEquals(2, set.size());
+    }
+
+    @Test
+    void matchesTreeSetThroughBlockSplitsAndMerges() {
+        Random random = new Random(11);
+        LongSortedSet set = new LongSortedSet();
+        TreeSet<Long> expected = new TreeSet<>();
+        for (int i = 0; i < 40_000; i++) {
+            long value = random.nextInt(5000);
+            assertEquals(expected.add(value), set.add(value));
+        }
+        assertArrayEquals(expected.stream().mapToLong(Long::longValue).toArray(), set.toArray());
+        // удаление почти всех значений сливает опустевшие блоки
+        for (int i = 0; i < 60_000; i++) {
+            long value = random.nextInt(5000);
+            assertEquals(expected.remove(value), set.remove(value));
+            assertEquals(expected.contains(value + 1), set.contains(value + 1));
+        }
+        assertEquals(expected.size(), set.size());
+        assertArrayEquals(expected.stream().mapToLong(Long::longValue).toArray(), set.toArray());
+        assertArrayEquals(set.toArray(), set.stream().toArray());
+
+        set.addAll(new long[]{7, 7, 4999, 100_000});
+        expected.addAll(List.of(7L, 4999L, 100_000L));
+        assertArrayEquals(expected.stream().mapToLong(Long::longValue).toArray(), set.toArray());
+    }
+
+    @Test
+    void clearIsNotUndoneByConcurrentAdd() throws InterruptedException {
+        LongSortedSet set = new LongSortedSet();
+        AtomicLong added = new AtomicLong();
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread adder = new Thread(() -> {
+            for (long value = 1; running.get(); value++) {
+                set.add(value);
+                added.set(value);
+            }
+        });
+        adder.start();
+        try {
+            for (int i = 0; i < 200_000; i++) {
+                long completed = added.get();
+                set.clear();
+                // значения, добавленные до очистки, не должны вернуться копией старых блоков
+                long[] values = set.toArray();
+                assertTrue(values.length == 0 || values[0] > completed, "очищенные значения вернулись");
+            }
+        } finally {
+            running.set(false);
+            adder.join();
+        }
+    }
+
+    @Test
+    void writeAllocationDoesNotGrowWithSetSize() {
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        LongSortedSet set = new LongSortedSet();
+        long[] values = new long[100_000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i * 2L;
+        }
+        set.addAll(values);
+        // прогрев, чтобы в замер не попали загрузка классов и компиляция
+        for (int i = 0; i < 1000; i++) {
+            set.add(i * 2L + 1);
+            set.remove(i * 2L + 1);
+        }
+
+        int writes = 1000;
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < writes; i++) {
+            long value = 50_001L + i * 2L;
+            set.add(value);
+            set.remove(value);
+        }
+        long perWrite = (threads.getCurrentThreadAllocatedBytes() - before) / (2L * writes);
+        // копия всего массива стоила бы 800 КБ; блок и оглавление — единицы килобайт
+        assertTrue(perWrite < 16 * 1024, "на запись выделено " + perWrite + " байт");
+        assertEquals(values.length, set.size());
+    }
+
+    @Test
+    void intersectMatchesNaiveIntersectionForAnySizeRatio() {
+        Random random = new Random(42);
+        for (int smallSize : new int[]{0, 1, 10, 500}) {
+            for (int largeSize : new int[]{10, 1000, 20000}) {
+                LongSortedSet small = new LongSortedSet();
+                LongSortedSet large = new LongSortedSet();
+                TreeSet<Long> expected = new TreeSet<>();
+                TreeSet<Long> largeValues = new TreeSet<>();
+                for (int i = 0; i < largeSize; i++) {
+                    long value = random.nextInt(100_000);
+                    large.add(value);
+                    largeValues.add(value);
+                }
+                for (int i = 0; i < smallSize; i++) {
+                    long value = random.nextInt(100_000);
+                    small.add(value);
+                    if (largeValues.contains(value)) {
+                        expected.add(value);
+                    }
+                }
+                long[] expectedArray = expected.stream().mapToLong(Long::longValue).toArray();
+                assertArrayEquals(expectedArray, small.intersect(large));
+                assertArrayEquals(expectedArray, large.intersect(small));
+            }
+        }
+    }
+}